@@ -0,0 +1,187 @@
+package org.khrapov.pegsolitaire.solver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of the work the search does for every position: producing the
+ * children of a generation, finding the canonical form of a position,
+ * scoring it, removing the duplicates of a generation and selecting the
+ * best of it.
+ *
+ * <p>
+ * Every benchmark works on one whole generation of the English board,
+ * taken from the middle of a search from the centre with pruning number
+ * 121, and reports the time for the whole generation.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PositionBenchmark
+{
+    private static int[] englishBoard = new int[]{
+        0, 0, 1, 1, 1, 0, 0,
+        0, 0, 1, 1, 1, 0, 0,
+        1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1,
+        0, 0, 1, 1, 1, 0, 0,
+        0, 0, 1, 1, 1, 0, 0
+    };
+
+
+    @Param({"10"})
+    public int depth;
+
+    private List<Position> generation;
+    private List<Position> children;
+    private PositionSet dedup;
+    private long[] key = new long[2];
+
+
+    @Setup
+    public void setup()
+    {
+        Board b = new Board(7, 7, englishBoard);
+        generation = new ArrayList<Position>();
+        generation.add(b.initialPosition(3, 3));
+
+        for(int d = 0; d < depth; d++)
+        {
+            generation = PruningSearch.selectBest(unique(generation), 121);
+        }
+
+        children = new ArrayList<Position>();
+        for(Position p : generation)
+        {
+            children.addAll(p.children());
+        }
+        dedup = new PositionSet(children.size());
+    }
+
+
+    // the children of the generation, without duplicates
+    private static List<Position> unique(List<Position> currentGen)
+    {
+        PositionSet seen = new PositionSet();
+        List<Position> next = new ArrayList<Position>();
+        for(Position p : currentGen)
+        {
+            for(Position child : p.children())
+            {
+                if(seen.add(child.lo(), child.hi()))
+                {
+                    next.add(child);
+                }
+            }
+        }
+        return next;
+    }
+
+
+    @Benchmark
+    public void children(Blackhole bh)
+    {
+        for(Position p : generation)
+        {
+            bh.consume(p.children());
+        }
+    }
+
+
+    /**
+     * The packed form of a position that the search deduplicates on
+     * without symmetry; what the old character id was.
+     */
+    @Benchmark
+    public void packed(Blackhole bh)
+    {
+        for(Position p : children)
+        {
+            bh.consume(p.lo() ^ p.hi());
+        }
+    }
+
+
+    /**
+     * The canonical form that the search deduplicates on with symmetry;
+     * what the old symmetric id was.
+     */
+    @Benchmark
+    public void canonical(Blackhole bh)
+    {
+        for(Position p : children)
+        {
+            p.canonical(key);
+            bh.consume(key[0] ^ key[1]);
+        }
+    }
+
+
+    @Benchmark
+    public void calculateCompactnessScore(Blackhole bh)
+    {
+        for(Position p : children)
+        {
+            bh.consume(p.calculateCompactnessScore());
+        }
+    }
+
+
+    @Benchmark
+    public int dedup()
+    {
+        dedup.clear();
+        int added = 0;
+        for(Position p : children)
+        {
+            if(dedup.add(p.lo(), p.hi()))
+            {
+                added++;
+            }
+        }
+        return added;
+    }
+
+
+    @Benchmark
+    public int dedupWithSymmetry()
+    {
+        dedup.clear();
+        int added = 0;
+        for(Position p : children)
+        {
+            p.canonical(key);
+            if(dedup.add(key[0], key[1]))
+            {
+                added++;
+            }
+        }
+        return added;
+    }
+
+
+    @Benchmark
+    public List<Position> selectBest()
+    {
+        return PruningSearch.selectBest(children, 121);
+    }
+}
@@ -0,0 +1,134 @@
+package org.khrapov.pegsolitaire.solver;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end PruningSearch on the boards of PruningSearchTest, with the
+ * pruning numbers and symmetry settings used there. A run that does not
+ * find a solution fails rather than report a time for the wrong work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark
+{
+    private static int[] englishBoard = new int[]{
+        0, 0, 1, 1, 1, 0, 0,
+        0, 0, 1, 1, 1, 0, 0,
+        1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1,
+        0, 0, 1, 1, 1, 0, 0,
+        0, 0, 1, 1, 1, 0, 0
+    };
+
+
+    private static int[] board9x9 = new int[]{
+        1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1
+    };
+
+
+    private static int[] wiegleb = new int[] {
+        0, 0, 0, 1, 1, 1, 0, 0, 0,
+        0, 0, 0, 1, 1, 1, 0, 0, 0,
+        0, 0, 0, 1, 1, 1, 0, 0, 0,
+        1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1,
+        1, 1, 1, 1, 1, 1, 1, 1, 1,
+        0, 0, 0, 1, 1, 1, 0, 0, 0,
+        0, 0, 0, 1, 1, 1, 0, 0, 0,
+        0, 0, 0, 1, 1, 1, 0, 0, 0
+    };
+
+
+    private static int[] diamond41 = new int[] {
+        0, 0, 0, 0, 1, 0, 0, 0, 0,
+        0, 0, 0, 1, 1, 1, 0, 0, 0,
+        0, 0, 1, 1, 1, 1, 1, 0, 0,
+        0, 1, 1, 1, 1, 1, 1, 1, 0,
+        1, 1, 1, 1, 1, 1, 1, 1, 1,
+        0, 1, 1, 1, 1, 1, 1, 1, 0,
+        0, 0, 1, 1, 1, 1, 1, 0, 0,
+        0, 0, 0, 1, 1, 1, 0, 0, 0,
+        0, 0, 0, 0, 1, 0, 0, 0, 0
+    };
+
+
+    @Param({"english", "wiegleb", "diamond41", "9x9"})
+    public String board;
+
+    private Position initialPosition;
+    private int pruningNumber;
+    private boolean useSymmetry;
+
+
+    @Setup
+    public void setup()
+    {
+        if(board.equals("english"))
+        {
+            initialPosition = new Board(7, 7, englishBoard).initialPosition(3, 3);
+            pruningNumber = 121;
+        }
+        else if(board.equals("wiegleb"))
+        {
+            initialPosition = new Board(9, 9, wiegleb).initialPosition(4, 4);
+            pruningNumber = 186;
+        }
+        else if(board.equals("diamond41"))
+        {
+            initialPosition = new Board(9, 9, diamond41).initialPosition(3, 1);
+            pruningNumber = 83;
+            useSymmetry = true;
+        }
+        else if(board.equals("9x9"))
+        {
+            initialPosition = new Board(9, 9, board9x9).initialPosition(4, 4);
+            pruningNumber = 17;
+            useSymmetry = true;
+        }
+        else
+        {
+            throw new RuntimeException("Unknown board: " + board);
+        }
+    }
+
+
+    @Benchmark
+    public int search()
+    {
+        PruningSearch pruningSearch = new PruningSearch(initialPosition);
+        pruningSearch.setUseSymmetry(useSymmetry);
+        pruningSearch.prune(pruningNumber);
+
+        int solutions = pruningSearch.search();
+        if(solutions < 1)
+        {
+            throw new RuntimeException("No solution to " + board + " board");
+        }
+        return solutions;
+    }
+}
@@ -6,6 +6,8 @@ import org.khrapov.pegsolitaire.solver.Board;
 import org.khrapov.pegsolitaire.solver.Position;
 import org.khrapov.pegsolitaire.solver.PruningSearch;
 
+import java.util.Iterator;
+
 class SearchRunner
 {
   int[] boardInitArray;
@@ -24,26 +26,29 @@ class SearchRunner
     Position p = b.initialPosition(initPosX, initPosY);
     PruningSearch pruningSearch = new PruningSearch(p);
     pruningSearch.prune(pruningFactor);
-    int n_sol = pruningSearch.search();
 
-    if(n_sol > 0)
+    // stop at the first complement solution
+    int n_sol = 0;
+    Iterator<Position> solutions = pruningSearch.solutions().iterator();
+    while(solutions.hasNext())
     {
-      System.out.printf("Found %d solution(s).%n", n_sol);
-
-      for(int i = 0; i < n_sol; i++)
+      Position f = solutions.next();
+      n_sol++;
+      if(p.isComplement(f))
       {
-        Position f = pruningSearch.getFinalPosition(i);
-        if(p.isComplement(f))
-        {
-          System.out.println("Found complement solution.");
-          Visualizer.title = String.format("%s Solution #%d", boardName, i+1);
-          Visualizer.board = b;
-          Visualizer.initPosition = p;
-          Visualizer.solution = pruningSearch.getSolution(i);
-          Application.launch(Visualizer.class, args);
-          return;
-        }
+        System.out.println("Found complement solution.");
+        Visualizer.title = String.format("%s Solution #%d", boardName, n_sol);
+        Visualizer.board = b;
+        Visualizer.initPosition = p;
+        Visualizer.solution = pruningSearch.getSolution(n_sol - 1);
+        Application.launch(Visualizer.class, args);
+        return;
       }
+    }
+
+    if(n_sol > 0)
+    {
+      System.out.printf("Found %d solution(s).%n", n_sol);
 
       int i = 0;
       System.out.println("Did not find any complement solutions. Displaying solution #1.");
@@ -0,0 +1,173 @@
+package org.khrapov.pegsolitaire.solver;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Class BatchSolver solves many positions at once, one PruningSearch per
+ * job, on a work-stealing pool.
+ *
+ * <p>
+ * Jobs are taken from an iterator and results are handed back through
+ * another, in the order the jobs finish. The iterator of jobs is only
+ * advanced when there is room for another job in flight, and room is only
+ * made when the caller takes a result, so a slow consumer holds back the
+ * producer and an endless generator of jobs is fine.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * BatchSolver solver = new BatchSolver(Runtime.getRuntime().availableProcessors());
+ * Iterator<SolveResult> results = solver.solve(jobs);
+ * while(results.hasNext()) {
+ *     SolveResult r = results.next();
+ *     ...
+ * }
+ * solver.shutdown();
+ * }
+ * </pre>
+ */
+public class BatchSolver
+{
+    private final ForkJoinPool pool;
+    private int maxInFlight;
+    private SolveCache cache = null;
+
+
+    /**
+     * @param threads number of jobs to run at the same time.
+     */
+    public BatchSolver(int threads)
+    {
+        if(threads < 1)
+        {
+            throw new RuntimeException("thread count may not be smaller than 1");
+        }
+        pool = new ForkJoinPool(threads);
+        maxInFlight = 2*threads;
+    }
+
+
+    /**
+     * Sets how many jobs may be taken from the job iterator and not yet
+     * handed back as results. The default is twice the number of threads,
+     * which keeps every thread busy while a result waits to be taken.
+     *
+     * @param jobs largest number of jobs in flight, at least 1.
+     */
+    public void setMaxInFlight(int jobs)
+    {
+        if(jobs < 1)
+        {
+            throw new RuntimeException("jobs in flight may not be fewer than 1");
+        }
+        maxInFlight = jobs;
+    }
+
+
+    /**
+     * Answers jobs from the cache when it has them, and stores the results
+     * of the others in it. None by default.
+     *
+     * @param cache cache to use, or null.
+     */
+    public void setCache(SolveCache cache)
+    {
+        this.cache = cache;
+    }
+
+
+    /**
+     * Starts solving the jobs. The returned iterator must be used from a
+     * single thread. If a job fails, next() throws a RuntimeException.
+     *
+     * @param jobs jobs to solve, possibly without end.
+     * @return results, in the order the jobs finish.
+     */
+    public Iterator<SolveResult> solve(Iterator<SolveJob> jobs)
+    {
+        return new Results(jobs);
+    }
+
+
+    public void shutdown()
+    {
+        pool.shutdown();
+    }
+
+
+    private final class Results implements Iterator<SolveResult>
+    {
+        private final Iterator<SolveJob> jobs;
+        private final CompletionService<SolveResult> done = new ExecutorCompletionService<SolveResult>(pool);
+        private int inFlight = 0;
+
+
+        Results(Iterator<SolveJob> jobs)
+        {
+            this.jobs = jobs;
+            fill();
+        }
+
+
+        private void fill()
+        {
+            while(inFlight < maxInFlight && jobs.hasNext())
+            {
+                final SolveJob job = jobs.next();
+                final SolveCache cache = BatchSolver.this.cache;
+                done.submit(() -> cache == null ? job.solve() : cache.solve(job));
+                inFlight++;
+            }
+        }
+
+
+        @Override
+        public boolean hasNext()
+        {
+            return inFlight > 0;
+        }
+
+
+        @Override
+        public SolveResult next()
+        {
+            if(inFlight == 0)
+            {
+                throw new NoSuchElementException();
+            }
+
+            Future<SolveResult> finished;
+            try
+            {
+                finished = done.take();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            inFlight--;
+            fill();
+
+            try
+            {
+                return finished.get();
+            }
+            catch(InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            catch(ExecutionException e)
+            {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+    }
+}
@@ -1,13 +1,23 @@
 package org.khrapov.pegsolitaire.solver;
 
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 /**
  * Board represents the geometry of a particular Peg Solitaire board.
  * The representation is a rectangular array X by Y in dimension. The places
  * in the array that have a hole that can by occupied by a peg are marked
  * with 1s and the disallowed positions are marked with 0s.
+ *
+ * The holes are numbered 0..holeCount-1 in the order the array is scanned,
+ * row by row, and every table of the board is compiled over that numbering
+ * once, so the cells outside the board cost nothing after construction.
+ * Positions on the board are stored as bitboards: hole h is bit h of a pair
+ * of longs. Holes 0..63 live in the low word and holes 64..127 in the high
+ * word, so the board may have at most 128 holes, and a board of up to 64
+ * holes never touches the high word however large its array.
  */
 public final class Board
 {
@@ -15,6 +25,8 @@ public final class Board
     public final int Y;
     public final int holeCount;
 
+    static final int MAX_HOLES = 128;
+
     // symmetry
     final boolean verticalFlip;
     final boolean horizontalFlip;
@@ -26,6 +38,65 @@ public final class Board
 
     private final boolean[] holes;
 
+    // Hole numbering. holeAt maps a cell (y*X + x) to the number of its
+    // hole, or -1 if the cell is outside the board; holeX and holeY map the
+    // number back to coordinates.
+    private final int[] holeAt;
+    final int[] holeX;
+    final int[] holeY;
+
+    // bitboard of the holes that are in play
+    final long holesLo;
+    final long holesHi;
+
+    // Jump table. Every legal (from, over, to) triple of holes on this board
+    // is compiled once, in the order the cells are scanned, so that move
+    // generation only walks the jumps that exist.
+    final int jumpCount;
+    final int[] jumpFrom;
+    final int[] jumpOver;
+    final int[] jumpTo;
+    final long[] jumpPegsLo; // from and over, must be occupied
+    final long[] jumpPegsHi;
+    final long[] jumpHoleLo; // to, must be empty
+    final long[] jumpHoleHi;
+    final Move[] jumpMove;
+
+    // bitboards of the up to four holes next to each hole
+    final long[] neighboursLo;
+    final long[] neighboursHi;
+
+    // outsideLo/Hi[k - 1] is the bitboard of the holes with at least k of
+    // their four sides facing outside the board; outsideSides is the total.
+    final long[] outsideLo;
+    final long[] outsideHi;
+    final int outsideSides;
+
+    // Position class. The holes are coloured 0, 1, 2 twice over, along the
+    // two diagonals: (x + y) mod 3 and (x - y) mod 3. classLo/Hi[3*d + c] is
+    // the bitboard of colour c in colouring d.
+    private final long[] classLo;
+    private final long[] classHi;
+
+    // Symmetry group. For each symmetry of the board other than the identity,
+    // symmetryImage maps a hole to the hole it is carried to, and
+    // symmetryLo/Hi are byte-chunk lookup tables: entry (k << 8 | b) is the
+    // bitboard image of byte value b found in byte k of a position.
+    final int symmetryCount;
+    final int[][] symmetryImage;
+    private final long[][] symmetryLo;
+    private final long[][] symmetryHi;
+    private final int chunks;
+
+    private static final int ROTATE_270 = 0;
+    private static final int ROTATE_180 = 1;
+    private static final int ROTATE_90 = 2;
+    private static final int VERTICAL_FLIP = 3;
+    private static final int HORIZONTAL_FLIP = 4;
+    private static final int RIGHT_DIAGONAL_FLIP = 5;
+    private static final int LEFT_DIAGONAL_FLIP = 6;
+    private static final int SQUARE_SYMMETRIES = 7;
+
 
     /**
      * Set the dimensions of the array.
@@ -46,34 +117,364 @@ public final class Board
         Y = y;
         holeCount = (int) Arrays.stream(holes).filter((h) -> h == 1).count();
 
+        if (holeCount > MAX_HOLES) {
+            throw new RuntimeException("Board may not have more than " + MAX_HOLES + " holes.");
+        }
+
         this.holes = new boolean[x * y];
+        holeAt = new int[x * y];
+        holeX = new int[holeCount];
+        holeY = new int[holeCount];
 
+        long lo = 0L;
+        long hi = 0L;
+        int h = 0;
         for (int i = 0; i < this.holes.length; i++) {
+            holeAt[i] = -1;
             if (holes[i] == 1) {
                 this.holes[i] = true;
+                holeAt[i] = h;
+                holeX[h] = i % X;
+                holeY[h] = i / X;
+                lo |= lo(h);
+                hi |= hi(h);
+                h++;
             }
         }
+        holesLo = lo;
+        holesHi = hi;
 
-        SymmetryHelper h = new SymmetryHelper(X, Y, this.holes);
+        int[][] jumps = compileJumps();
+        jumpCount = jumps.length;
+        jumpFrom = new int[jumpCount];
+        jumpOver = new int[jumpCount];
+        jumpTo = new int[jumpCount];
+        jumpPegsLo = new long[jumpCount];
+        jumpPegsHi = new long[jumpCount];
+        jumpHoleLo = new long[jumpCount];
+        jumpHoleHi = new long[jumpCount];
+        jumpMove = new Move[jumpCount];
 
-        verticalFlip = h.equals(h.verticalFlip());
-        horizontalFlip = h.equals(h.horizontalFlip());
-        rotate180 = h.equals(h.rotate180());
+        for (int j = 0; j < jumpCount; j++) {
+            int from = jumps[j][0];
+            int over = jumps[j][1];
+            int to = jumps[j][2];
+            jumpFrom[j] = from;
+            jumpOver[j] = over;
+            jumpTo[j] = to;
+            jumpPegsLo[j] = lo(from) | lo(over);
+            jumpPegsHi[j] = hi(from) | hi(over);
+            jumpHoleLo[j] = lo(to);
+            jumpHoleHi[j] = hi(to);
+            jumpMove[j] = new Move(holeX[from], holeY[from], holeX[to], holeY[to]);
+        }
 
-        if(X == Y)
-        {
-            leftDiagonalFlip = h.equals(h.leftDiagonalFlip());
-            rightDiagonalFlip = h.equals(h.rightDiagonalFlip());
-            rotate90 = h.equals(h.rotate90());
-            rotate270 = h.equals(h.rotate270());
+        int[] dx = new int[] { -1, 1, 0, 0 };
+        int[] dy = new int[] { 0, 0, -1, 1 };
+        neighboursLo = new long[holeCount];
+        neighboursHi = new long[holeCount];
+        for (int i = 0; i < holeCount; i++) {
+            for (int d = 0; d < 4; d++) {
+                int n = hole(holeX[i] + dx[d], holeY[i] + dy[d]);
+                if (n >= 0) {
+                    neighboursLo[i] |= lo(n);
+                    neighboursHi[i] |= hi(n);
+                }
+            }
         }
-        else
-        {
-            leftDiagonalFlip = false;
-            rightDiagonalFlip = false;
-            rotate90 = false;
-            rotate270 = false;
+
+        outsideLo = new long[4];
+        outsideHi = new long[4];
+        int sides = 0;
+        for (int i = 0; i < holeCount; i++) {
+            int outside = 4 - Long.bitCount(neighboursLo[i]) - Long.bitCount(neighboursHi[i]);
+            for (int k = 0; k < outside; k++) {
+                outsideLo[k] |= lo(i);
+                outsideHi[k] |= hi(i);
+            }
+            sides += outside;
+        }
+        outsideSides = sides;
+
+        classLo = new long[6];
+        classHi = new long[6];
+        for (int i = 0; i < holeCount; i++) {
+            int cx = holeX[i];
+            int cy = holeY[i];
+            classLo[(cx + cy) % 3] |= lo(i);
+            classHi[(cx + cy) % 3] |= hi(i);
+            classLo[3 + (cx - cy + 3*Y) % 3] |= lo(i);
+            classHi[3 + (cx - cy + 3*Y) % 3] |= hi(i);
+        }
+
+        verticalFlip = isSymmetry(VERTICAL_FLIP);
+        horizontalFlip = isSymmetry(HORIZONTAL_FLIP);
+        rotate180 = isSymmetry(ROTATE_180);
+        leftDiagonalFlip = isSymmetry(LEFT_DIAGONAL_FLIP);
+        rightDiagonalFlip = isSymmetry(RIGHT_DIAGONAL_FLIP);
+        rotate90 = isSymmetry(ROTATE_90);
+        rotate270 = isSymmetry(ROTATE_270);
+
+        List<int[]> images = new ArrayList<int[]>();
+        for (int sym = 0; sym < SQUARE_SYMMETRIES; sym++) {
+            if (isSymmetry(sym)) {
+                int[] image = new int[holeCount];
+                for (int i = 0; i < this.holes.length; i++) {
+                    if (this.holes[i]) {
+                        image[holeAt[source(sym, i)]] = holeAt[i];
+                    }
+                }
+                images.add(image);
+            }
+        }
+
+        symmetryCount = images.size();
+        symmetryImage = images.toArray(new int[0][]);
+        chunks = (holeCount + 7) / 8;
+        symmetryLo = new long[symmetryCount][chunks << 8];
+        symmetryHi = new long[symmetryCount][chunks << 8];
+
+        for (int sym = 0; sym < symmetryCount; sym++) {
+            for (int k = 0; k < chunks; k++) {
+                for (int b = 1; b < 256; b++) {
+                    long imageLo = 0L;
+                    long imageHi = 0L;
+                    for (int bit = 0; bit < 8; bit++) {
+                        int i = 8*k + bit;
+                        if ((b & (1 << bit)) != 0 && i < holeCount) {
+                            imageLo |= lo(symmetryImage[sym][i]);
+                            imageHi |= hi(symmetryImage[sym][i]);
+                        }
+                    }
+                    symmetryLo[sym][(k << 8) | b] = imageLo;
+                    symmetryHi[sym][(k << 8) | b] = imageHi;
+                }
+            }
+        }
+    }
+
+
+    // The cell whose content symmetry sym moves into cell i.
+    private int source(int sym, int i)
+    {
+        int x = i % X;
+        int y = i / X;
+
+        switch (sym) {
+            case VERTICAL_FLIP: return y*X + (X - 1) - x;
+            case HORIZONTAL_FLIP: return ((Y - 1) - y)*X + x;
+            case ROTATE_180: return ((Y - 1) - y)*X + (X - 1) - x;
+            case LEFT_DIAGONAL_FLIP: return ((X - 1) - x)*X + (Y - 1) - y;
+            case RIGHT_DIAGONAL_FLIP: return x*X + y;
+            case ROTATE_90: return ((X - 1) - x)*X + y;
+            case ROTATE_270: return x*X + (Y - 1) - y;
+            default: throw new RuntimeException("unknown symmetry");
+        }
+    }
+
+
+    // Diagonal flips and quarter turns only exist on square arrays.
+    private boolean isSymmetry(int sym)
+    {
+        if (X != Y && sym != VERTICAL_FLIP && sym != HORIZONTAL_FLIP && sym != ROTATE_180) {
+            return false;
+        }
+
+        for (int i = 0; i < holes.length; i++) {
+            if (holes[i] != holes[source(sym, i)]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Writes the canonical form of a bitboard into key[0] (low word) and
+     * key[1] (high word): the smallest of its images under the symmetries
+     * of the board, compared as unsigned 128-bit numbers. Each image is
+     * assembled from one table lookup per byte of the position, so nothing
+     * is allocated.
+     *
+     * @return the symmetry that gives the canonical form, or -1 if it is the
+     * bitboard itself.
+     */
+    int canonical(long lo, long hi, long[] key)
+    {
+        return canonical(lo, hi, key, allSymmetries());
+    }
+
+
+    /**
+     * Same as canonical(lo, hi, key), restricted to a subgroup of the board's
+     * symmetries, given as a bit set over 0..symmetryCount-1 (see
+     * symmetriesFixing).
+     */
+    int canonical(long lo, long hi, long[] key, int symmetries)
+    {
+        long bestLo = lo;
+        long bestHi = hi;
+        int best = -1;
+
+        for (int sym = 0; sym < symmetryCount; sym++) {
+            if ((symmetries & (1 << sym)) == 0) {
+                continue;
+            }
+
+            image(sym, lo, hi, key);
+
+            int c = Long.compareUnsigned(key[1], bestHi);
+            if (c < 0 || (c == 0 && Long.compareUnsigned(key[0], bestLo) < 0)) {
+                bestLo = key[0];
+                bestHi = key[1];
+                best = sym;
+            }
+        }
+
+        key[0] = bestLo;
+        key[1] = bestHi;
+        return best;
+    }
+
+
+    // Writes the image of a bitboard under symmetry sym into out.
+    void image(int sym, long lo, long hi, long[] out)
+    {
+        long[] tableLo = symmetryLo[sym];
+        long[] tableHi = symmetryHi[sym];
+        long imageLo = 0L;
+        long imageHi = 0L;
+
+        for (int k = 0; k < chunks; k++) {
+            long word = k < 8 ? lo >>> (8*k) : hi >>> (8*(k - 8));
+            int index = (k << 8) | (int) (word & 0xFF);
+            imageLo |= tableLo[index];
+            imageHi |= tableHi[index];
+        }
+
+        out[0] = imageLo;
+        out[1] = imageHi;
+    }
+
+
+    int allSymmetries()
+    {
+        return (1 << symmetryCount) - 1;
+    }
+
+
+    /**
+     * The symmetries that map the given bitboard onto itself. Searching for a
+     * particular target may only identify positions under these, since any
+     * other symmetry would also move the target.
+     */
+    int symmetriesFixing(long lo, long hi)
+    {
+        long[] out = new long[2];
+        int symmetries = 0;
+
+        for (int sym = 0; sym < symmetryCount; sym++) {
+            image(sym, lo, hi, out);
+            if (out[0] == lo && out[1] == hi) {
+                symmetries |= 1 << sym;
+            }
+        }
+
+        return symmetries;
+    }
+
+
+    /**
+     * Pagoda functions for reaching the given target bitboard. These come from
+     * a library of standard pagodas rather than from solving a linear program:
+     * for every peg of the target, weights of OMEGA^d where OMEGA is the golden
+     * ratio conjugate and d is the distance from that peg counted along rows
+     * and columns together, along rows only, and along columns only. Since
+     * OMEGA^(d+2) + OMEGA^(d+1) == OMEGA^d, every jump toward the target peg
+     * exactly preserves the value and every other jump loses value. Each
+     * candidate is still checked against the jump table before it is used.
+     */
+    Pagoda[] pagodas(long targetLo, long targetHi)
+    {
+        return pagodas(targetLo, targetHi, 0L, 0L);
+    }
+
+
+    /**
+     * Pagoda functions for a backward search: they discard positions that
+     * cannot be reached from the given start bitboard by forward jumps.
+     */
+    Pagoda[] backwardPagodas(long startLo, long startHi)
+    {
+        return pagodas(holesLo & ~startLo, holesHi & ~startHi, holesLo, holesHi);
+    }
+
+
+    private Pagoda[] pagodas(long targetLo, long targetHi, long flipLo, long flipHi)
+    {
+        List<Pagoda> pagodas = new ArrayList<Pagoda>();
+
+        for (int t = 0; t < holeCount; t++) {
+            if (((targetLo & lo(t)) | (targetHi & hi(t))) == 0L) {
+                continue;
+            }
+
+            for (int kind = 0; kind < 3; kind++) {
+                double[] weights = new double[holeCount];
+                for (int i = 0; i < holeCount; i++) {
+                    int dx = kind == 2 ? 0 : Math.abs(holeX[i] - holeX[t]);
+                    int dy = kind == 1 ? 0 : Math.abs(holeY[i] - holeY[t]);
+                    weights[i] = Math.pow(Pagoda.OMEGA, dx + dy);
+                }
+
+                if (Pagoda.isPagoda(this, weights)) {
+                    pagodas.add(new Pagoda(weights, targetLo, targetHi, flipLo, flipHi));
+                }
+            }
+        }
+
+        return pagodas.toArray(new Pagoda[0]);
+    }
+
+
+    /**
+     * Conway's position class of a bitboard, four bits. Along a row or a
+     * column the three cells of a jump have three different colours in both
+     * colourings, so every jump flips the parity of the peg count of every
+     * colour. The parities of the sums of colours 0 and 1 and of colours 1
+     * and 2 therefore never change, in either colouring. Two positions of
+     * different classes can never be reached from one another.
+     */
+    int positionClass(long lo, long hi)
+    {
+        int positionClass = 0;
+        for (int d = 0; d < 2; d++) {
+            int[] count = new int[3];
+            for (int c = 0; c < 3; c++) {
+                count[c] = Long.bitCount(lo & classLo[3*d + c]) + Long.bitCount(hi & classHi[3*d + c]);
+            }
+            positionClass |= ((count[0] + count[1]) & 1) << (2*d);
+            positionClass |= ((count[1] + count[2]) & 1) << (2*d + 1);
         }
+        return positionClass;
+    }
+
+
+    /**
+     * Checks, in a few operations, whether the final position can be reached
+     * from the initial position at all as far as the position class goes.
+     * A search between positions of different classes is bound to fail, so
+     * generators of random boards and start holes should call this first.
+     *
+     * @param initialPosition position the search would start from.
+     * @param finalPosition position whose complement is the target, as given to
+     *                      PruningSearch and ExhaustiveSearch.
+     * @return false if no sequence of jumps leads from one to the other.
+     */
+    public boolean possiblySolvable(Position initialPosition, Position finalPosition)
+    {
+        return positionClass(initialPosition.lo(), initialPosition.hi())
+            == positionClass(holesLo & ~finalPosition.lo(), holesHi & ~finalPosition.hi());
     }
 
 
@@ -90,6 +491,68 @@ public final class Board
     }
 
 
+    // Directions are tried in the same order the original cell-scanning
+    // move generator used: down, up, right, left.
+    private int[][] compileJumps()
+    {
+        int[] dx = new int[] { 0, 0, 1, -1 };
+        int[] dy = new int[] { 1, -1, 0, 0 };
+        List<int[]> jumps = new ArrayList<int[]>();
+
+        for (int i = 0; i < holes.length; i++) {
+            if (!holes[i]) {
+                continue;
+            }
+
+            int x = i % X;
+            int y = i / X;
+
+            for (int d = 0; d < 4; d++) {
+                int x2 = x + 2*dx[d];
+                int y2 = y + 2*dy[d];
+                if (x2 < 0 || y2 < 0 || x2 >= X || y2 >= Y) {
+                    continue;
+                }
+
+                int over = (y + dy[d])*X + (x + dx[d]);
+                int to = y2*X + x2;
+                if (holes[over] && holes[to]) {
+                    jumps.add(new int[] { holeAt[i], holeAt[over], holeAt[to] });
+                }
+            }
+        }
+
+        return jumps.toArray(new int[0][]);
+    }
+
+
+    // low word of the bitboard mask of hole i
+    static long lo(int i)
+    {
+        return i < 64 ? 1L << i : 0L;
+    }
+
+
+    // high word of the bitboard mask of hole i
+    static long hi(int i)
+    {
+        return i < 64 ? 0L : 1L << (i - 64);
+    }
+
+
+    // the number of the hole at (x, y), or -1 if there is none there,
+    // including outside the array
+    int hole(int x, int y)
+    {
+        if (x < 0 || y < 0 || x >= X || y >= Y) {
+            return -1;
+        }
+
+        return holeAt[y*X + x];
+    }
+
+
+    // whether cell i = y*X + x of the array is a hole
     boolean allowed(int i)
     {
         return holes[i];
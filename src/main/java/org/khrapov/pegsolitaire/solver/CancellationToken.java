@@ -0,0 +1,23 @@
+package org.khrapov.pegsolitaire.solver;
+
+/**
+ * Lets another thread stop a search. Once cancelled, a token stays
+ * cancelled; use a new one for the next search.
+ * See PruningSearch.search(CancellationToken).
+ */
+public final class CancellationToken
+{
+    private volatile boolean cancelled = false;
+
+
+    public void cancel()
+    {
+        cancelled = true;
+    }
+
+
+    public boolean isCancelled()
+    {
+        return cancelled;
+    }
+}
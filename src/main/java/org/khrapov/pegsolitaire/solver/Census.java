@@ -0,0 +1,416 @@
+package org.khrapov.pegsolitaire.solver;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Class Census counts the positions that can be reached from an initial
+ * position, for every number of pegs, and how many of them can still be
+ * played down to a single peg. The counts are exact: nothing is pruned.
+ *
+ * <p>
+ * The census runs in two passes. The forward pass builds every generation,
+ * breadth first, the way ExternalSearch does but in memory: each generation
+ * is an array of packed positions, sorted and without duplicates. The
+ * backward pass starts from the single pegs reached and keeps, generation by
+ * generation, the positions that have a child kept one generation later.
+ * </p>
+ *
+ * <p>
+ * Positions are stored once per class of the symmetries that leave the
+ * initial position in place, and counted with the number of distinct
+ * positions in their class, so the counts are the same with or without
+ * symmetry. A board of up to 64 holes is stored as one long per
+ * position, any other as two. English from the centre holds about 23
+ * million classes, under 200 MB.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * Board b = new Board(7, 7, englishBoard);
+ * Census census = new Census(b.initialPosition(3, 3));
+ * census.setLog(System.out);
+ * census.run();
+ * long solvable = census.getSolvable(16);
+ * }
+ * </pre>
+ */
+public class Census
+{
+    private final Position initialPosition;
+    private boolean useSymmetry = true;
+    private PrintStream log = null;
+
+    private Board board;
+    private int symmetries;
+    private int groupSize;
+    private boolean wide;
+    private final long[] key = new long[2];
+    private final long[] image = new long[2];
+
+    private long[] reachable;
+    private long[] reachableClasses;
+    private long[] solvable;
+    private long[] solvableClasses;
+    private long held;
+    private long peakBytes;
+
+
+    public Census(Position initialPosition)
+    {
+        this.initialPosition = initialPosition;
+    }
+
+
+    /**
+     * Stores positions once per class of the symmetries that fix the initial
+     * position. On by default. The counts are exact either way; symmetry
+     * only saves memory and time.
+     *
+     * @param val whether to use the board's symmetries.
+     */
+    public void setUseSymmetry(boolean val)
+    {
+        useSymmetry = val;
+    }
+
+
+    /**
+     * Prints a line for every generation as it is finished: its size, the
+     * positions expanded per second and the memory the census holds.
+     *
+     * @param out where to print, or null for nothing.
+     */
+    public void setLog(PrintStream out)
+    {
+        log = out;
+    }
+
+
+    /**
+     * Takes the census.
+     */
+    public void run()
+    {
+        board = initialPosition.board();
+        wide = board.holesHi != 0L;
+        symmetries = useSymmetry ? board.symmetriesFixing(initialPosition.lo(), initialPosition.hi()) : 0;
+        groupSize = 1 + Integer.bitCount(symmetries);
+
+        int pegs = initialPosition.pegCount();
+        reachable = new long[pegs + 1];
+        reachableClasses = new long[pegs + 1];
+        solvable = new long[pegs + 1];
+        solvableClasses = new long[pegs + 1];
+        held = 0;
+        peakBytes = 0;
+
+        Layer[] generations = new Layer[pegs + 1];
+        Layer first = new Layer(1);
+        initialPosition.canonical(key, symmetries);
+        first.add(key[0], key[1]);
+        first.finish();
+        generations[pegs] = first;
+        count(first, reachable, reachableClasses, pegs);
+        held(first.bytes());
+
+        // forward, from the initial position down to the fewest pegs reached
+        int fewest = pegs;
+        while(fewest > 1 && generations[fewest].size > 0)
+        {
+            long start = System.nanoTime();
+            Layer current = generations[fewest];
+            Layer next = new Layer(Math.max(16, 4*current.size));
+            for(int i = 0; i < current.size; i++)
+            {
+                for(Position child : current.position(i).children())
+                {
+                    child.canonical(key, symmetries);
+                    next.add(key[0], key[1]);
+                }
+            }
+            next.finish();
+            if(next.size == 0)
+            {
+                break;
+            }
+
+            fewest--;
+            generations[fewest] = next;
+            held(next.bytes());
+            count(next, reachable, reachableClasses, fewest);
+            report("reached", fewest, reachable[fewest], next.size, current.size, start);
+        }
+
+        // backward, from the single pegs up to the initial position
+        if(fewest != 1)
+        {
+            return;
+        }
+        Layer good = generations[1];
+        count(good, solvable, solvableClasses, 1);
+        for(int p = 2; p <= pegs; p++)
+        {
+            long start = System.nanoTime();
+            Layer current = generations[p];
+            Layer kept = new Layer(Math.max(16, current.size / 4));
+            for(int i = 0; i < current.size; i++)
+            {
+                for(Position child : current.position(i).children())
+                {
+                    child.canonical(key, symmetries);
+                    if(good.contains(key[0], key[1]))
+                    {
+                        kept.add(current.lo(i), current.hi(i));
+                        break;
+                    }
+                }
+            }
+            kept.finish();
+            held(kept.bytes());
+
+            // the generation below is no longer needed
+            held(-generations[p - 1].bytes());
+            if(good != generations[p - 1])
+            {
+                held(-good.bytes());
+            }
+            generations[p - 1] = null;
+            good = kept;
+
+            count(good, solvable, solvableClasses, p);
+            report("solvable", p, solvable[p], good.size, current.size, start);
+        }
+    }
+
+
+    /**
+     * @return the number of distinct positions with the given number of pegs
+     * that can be reached from the initial position.
+     */
+    public long getReachable(int pegs)
+    {
+        return pegs >= 0 && pegs < reachable.length ? reachable[pegs] : 0;
+    }
+
+
+    /**
+     * @return the number of positions counted by getReachable that can still
+     * be played down to a single peg.
+     */
+    public long getSolvable(int pegs)
+    {
+        return pegs >= 0 && pegs < solvable.length ? solvable[pegs] : 0;
+    }
+
+
+    /**
+     * @return the number of classes under symmetry that getReachable counts;
+     * the same as getReachable without symmetry.
+     */
+    public long getReachableClasses(int pegs)
+    {
+        return pegs >= 0 && pegs < reachableClasses.length ? reachableClasses[pegs] : 0;
+    }
+
+
+    /**
+     * @return the number of classes under symmetry that getSolvable counts;
+     * the same as getSolvable without symmetry.
+     */
+    public long getSolvableClasses(int pegs)
+    {
+        return pegs >= 0 && pegs < solvableClasses.length ? solvableClasses[pegs] : 0;
+    }
+
+
+    /**
+     * @return the most bytes of positions the last census held at once,
+     * counting the generation being built.
+     */
+    public long getPeakBytes()
+    {
+        return peakBytes;
+    }
+
+
+    // Adds up the positions of a generation and their classes.
+    private void count(Layer layer, long[] positions, long[] classes, int pegs)
+    {
+        long total = 0;
+        for(int i = 0; i < layer.size; i++)
+        {
+            total += orbit(layer.lo(i), layer.hi(i));
+        }
+        positions[pegs] = total;
+        classes[pegs] = layer.size;
+    }
+
+
+    // the number of distinct images of a position under the symmetries used
+    private int orbit(long lo, long hi)
+    {
+        int fixed = 1;
+        for(int sym = 0; sym < board.symmetryCount; sym++)
+        {
+            if((symmetries & (1 << sym)) != 0)
+            {
+                board.image(sym, lo, hi, image);
+                if(image[0] == lo && image[1] == hi)
+                {
+                    fixed++;
+                }
+            }
+        }
+        return groupSize / fixed;
+    }
+
+
+    private void held(long bytes)
+    {
+        held += bytes;
+        peakBytes = Math.max(peakBytes, held);
+    }
+
+
+    private void report(String what, int pegs, long positions, int classes, int expanded, long start)
+    {
+        if(log == null)
+        {
+            return;
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        log.printf("%d pegs: %,d %s (%,d classes), %,.0f positions/s, %,d MB held%n",
+            pegs, positions, what, classes, expanded / Math.max(seconds, 1e-9), held >> 20);
+    }
+
+
+    /**
+     * A generation: its positions sorted and without duplicates, as lo words
+     * only, or as (lo, hi) pairs when the board reaches into the high word.
+     * Positions are added in any order; whenever the array fills up it is
+     * sorted and stripped of duplicates, and only grown if that does not
+     * free half of it.
+     */
+    private final class Layer
+    {
+        private long[] words;
+        private int size = 0;
+
+
+        Layer(int capacity)
+        {
+            words = new long[wide ? 2*capacity : capacity];
+        }
+
+
+        long lo(int i)
+        {
+            return wide ? words[2*i] : words[i];
+        }
+
+
+        long hi(int i)
+        {
+            return wide ? words[2*i + 1] : 0L;
+        }
+
+
+        Position position(int i)
+        {
+            return new Position(board, lo(i), hi(i));
+        }
+
+
+        long bytes()
+        {
+            return 8L*words.length;
+        }
+
+
+        void add(long lo, long hi)
+        {
+            int width = wide ? 2 : 1;
+            if(width*(size + 1) > words.length)
+            {
+                sortUnique();
+                if(2*width*size > words.length)
+                {
+                    words = Arrays.copyOf(words, 2*words.length);
+                    peakBytes = Math.max(peakBytes, held + bytes());
+                }
+            }
+
+            if(wide)
+            {
+                words[2*size] = lo;
+                words[2*size + 1] = hi;
+            }
+            else
+            {
+                words[size] = lo;
+            }
+            size++;
+        }
+
+
+        void finish()
+        {
+            sortUnique();
+            words = Arrays.copyOf(words, wide ? 2*size : size);
+        }
+
+
+        boolean contains(long lo, long hi)
+        {
+            if(!wide)
+            {
+                return Arrays.binarySearch(words, 0, size, lo) >= 0;
+            }
+
+            int left = 0;
+            int right = size - 1;
+            while(left <= right)
+            {
+                int mid = (left + right) >>> 1;
+                int c = PairSort.compare(words[2*mid], words[2*mid + 1], lo, hi);
+                if(c == 0)
+                {
+                    return true;
+                }
+                if(c < 0)
+                {
+                    left = mid + 1;
+                }
+                else
+                {
+                    right = mid - 1;
+                }
+            }
+            return false;
+        }
+
+
+        private void sortUnique()
+        {
+            if(wide)
+            {
+                PairSort.sort(words, size);
+                size = PairSort.unique(words, size);
+                return;
+            }
+
+            Arrays.sort(words, 0, size);
+            int m = 0;
+            for(int i = 0; i < size; i++)
+            {
+                if(m == 0 || words[i] != words[m - 1])
+                {
+                    words[m++] = words[i];
+                }
+            }
+            size = m;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.khrapov.pegsolitaire.solver;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Class ExhaustiveSearch answers whether a position can be solved at all.
+ *
+ * <p>
+ * Unlike PruningSearch it never discards a position on the strength of the
+ * heuristic, so "no solution" is a proof rather than a hint to raise the
+ * pruning number. It searches depth first, trying the children of every
+ * position in order of their compactness score, so solvable boards usually
+ * fall to the first few lines tried. Positions that have been searched
+ * completely without reaching the target are remembered, in canonical form,
+ * in a transposition table of fixed size, so the same dead end is not
+ * explored twice no matter which order of jumps led to it. When the table
+ * is full, old entries are evicted; that only costs repeated work, never a
+ * wrong answer. When a final position is given, children that pagoda
+ * functions prove unable to reach it are not searched at all, and a final
+ * position of another position class (see Board.possiblySolvable) is
+ * rejected before the search starts.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * Board b = new Board(7, 7, englishBoard);
+ * ExhaustiveSearch search = new ExhaustiveSearch(b.initialPosition(3, 3));
+ * if(search.search()) {
+ *     List<Move> moves = search.getSolution();
+ * }
+ * }
+ * </pre>
+ */
+public class ExhaustiveSearch
+{
+    private static final PositionComparator BY_SCORE = new PositionComparator();
+
+    private final Position initialPosition;
+    private final Position finalPosition;
+    private int tableSize = 1 << 22;
+    private boolean useSymmetry = true;
+
+    private TranspositionTable dead;
+    private int symmetries;
+    private Pagoda[] pagodas;
+    private final long[] key = new long[2];
+    private Position solution = null;
+    private long nodes = 0;
+
+
+    /**
+     * @param initialPosition initial Position from which we will conduct the search.
+     * @param finalPosition if not null, only solutions that end in the complement
+     *                      of this position (the single peg where it has its hole)
+     *                      are accepted.
+     */
+    public ExhaustiveSearch(Position initialPosition, Position finalPosition)
+    {
+        this.initialPosition = initialPosition;
+        this.finalPosition = finalPosition;
+    }
+
+    public ExhaustiveSearch(Position initialPosition)
+    {
+        this(initialPosition, null);
+    }
+
+
+    /**
+     * Sets the number of dead positions the transposition table can hold.
+     * Each takes 16 bytes. The default is about 4 million (64 MB).
+     *
+     * @param entries capacity of the table.
+     */
+    public void setTableSize(int entries)
+    {
+        tableSize = entries;
+    }
+
+
+    /**
+     * Positions that are mirror images or rotations of each other share one
+     * entry in the transposition table. On by default. When a final position
+     * is given, only the symmetries that leave it in place are used.
+     *
+     * @param val whether to use the board's symmetries.
+     */
+    public void setUseSymmetry(boolean val)
+    {
+        useSymmetry = val;
+    }
+
+
+    /**
+     * Initiates search.
+     *
+     * @return true if the position can be solved, false if it provably cannot.
+     */
+    public boolean search()
+    {
+        Board board = initialPosition.board();
+        solution = null;
+        nodes = 0;
+
+        if(finalPosition != null && !board.possiblySolvable(initialPosition, finalPosition))
+        {
+            return false;
+        }
+
+        dead = new TranspositionTable(tableSize);
+
+        if(!useSymmetry)
+        {
+            symmetries = 0;
+        }
+        else if(finalPosition == null)
+        {
+            symmetries = board.allSymmetries();
+        }
+        else
+        {
+            symmetries = board.symmetriesFixing(finalPosition.lo(), finalPosition.hi());
+        }
+
+        if(finalPosition == null)
+        {
+            pagodas = new Pagoda[0];
+        }
+        else
+        {
+            pagodas = board.pagodas(board.holesLo & ~finalPosition.lo(), board.holesHi & ~finalPosition.hi());
+        }
+
+        boolean solved = solve(initialPosition);
+        dead = null;
+        return solved;
+    }
+
+
+    /**
+     * @return the moves of the solution found by the last search, or null.
+     */
+    public List<Move> getSolution()
+    {
+        if(solution == null) { return null; }
+
+        return solution.getHistory();
+    }
+
+
+    public Position getFinalPosition()
+    {
+        return solution;
+    }
+
+
+    /**
+     * @return number of positions visited by the last search.
+     */
+    public long getNodeCount()
+    {
+        return nodes;
+    }
+
+
+    private boolean solve(Position p)
+    {
+        nodes++;
+
+        if(p.isFinal())
+        {
+            if(finalPosition == null || p.isComplement(finalPosition))
+            {
+                solution = p;
+                return true;
+            }
+            return false;
+        }
+
+        p.canonical(key, symmetries);
+        long lo = key[0];
+        long hi = key[1];
+        if(dead.contains(lo, hi))
+        {
+            return false;
+        }
+
+        List<Position> children = p.children();
+        Collections.sort(children, BY_SCORE);
+        for(Position child : children)
+        {
+            if(!Pagoda.excludes(pagodas, child) && solve(child))
+            {
+                return true;
+            }
+        }
+
+        dead.add(lo, hi);
+        return false;
+    }
+}
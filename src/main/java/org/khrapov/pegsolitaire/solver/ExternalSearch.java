@@ -0,0 +1,612 @@
+package org.khrapov.pegsolitaire.solver;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Class ExternalSearch is a breadth first search that keeps its generations
+ * on disk instead of on the heap.
+ *
+ * <p>
+ * Like ExhaustiveSearch it never prunes, so it answers whether a position
+ * can be solved at all, but it works generation by generation the way
+ * PruningSearch does. Every generation is a file of canonical positions,
+ * 16 bytes each, sorted and without duplicates. The next generation is
+ * built by streaming the current one from disk: children go into a buffer
+ * of fixed size, and each time it fills up it is sorted, stripped of
+ * duplicates and written out as a run file. The runs are then merged into
+ * the next generation file, dropping the duplicates between runs. The heap
+ * holds one buffer and one read buffer per run being merged, however large
+ * the generation is.
+ * </p>
+ *
+ * <p>
+ * Run files are deleted as soon as they are merged. Generation files are
+ * kept until the search ends, because the solution is recovered from them:
+ * starting at the final position, each generation is scanned once for a
+ * position one jump earlier. All scratch files live in the scratch
+ * directory and are deleted when <code>search()</code> returns.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * Board b = new Board(9, 9, wieglebBoard);
+ * ExternalSearch search = new ExternalSearch(b.initialPosition(4, 4));
+ * search.setScratchDirectory(new File("/var/tmp"));
+ * if(search.search()) {
+ *     List<Move> moves = search.getSolution();
+ * }
+ * }
+ * </pre>
+ */
+public class ExternalSearch
+{
+    private static final int RECORD = 16;
+
+    private final Position initialPosition;
+    private final Position finalPosition;
+    private File scratchDirectory = new File(System.getProperty("java.io.tmpdir"));
+    private int runSize = 1 << 22;
+    private int fanIn = 64;
+    private boolean useSymmetry = true;
+
+    private Board board;
+    private int symmetries;
+    private Pagoda[] pagodas;
+    private final long[] key = new long[2];
+    private final List<File> scratch = new ArrayList<File>();
+    private Position solution = null;
+    private long positions = 0;
+
+
+    /**
+     * @param initialPosition initial Position from which we will conduct the search.
+     * @param finalPosition if not null, only solutions that end in the complement
+     *                      of this position are accepted.
+     */
+    public ExternalSearch(Position initialPosition, Position finalPosition)
+    {
+        this.initialPosition = initialPosition;
+        this.finalPosition = finalPosition;
+    }
+
+    public ExternalSearch(Position initialPosition)
+    {
+        this(initialPosition, null);
+    }
+
+
+    /**
+     * Sets the directory scratch files are written to. The default is the
+     * system's temporary directory.
+     *
+     * @param directory an existing, writable directory.
+     */
+    public void setScratchDirectory(File directory)
+    {
+        scratchDirectory = directory;
+    }
+
+
+    /**
+     * Sets how many positions are sorted in memory before they are written
+     * out as a run. Each takes 16 bytes. The default is about 4 million
+     * (64 MB).
+     *
+     * @param positions size of the in-memory buffer.
+     */
+    public void setRunSize(int positions)
+    {
+        runSize = positions;
+    }
+
+
+    /**
+     * Sets how many run files are merged at a time. When a generation has
+     * more runs than this, groups of them are merged into longer runs first.
+     * The default is 64.
+     *
+     * @param runs number of files open at once during a merge, at least 2.
+     */
+    public void setFanIn(int runs)
+    {
+        if(runs < 2)
+        {
+            throw new RuntimeException("fan-in may not be smaller than 2");
+        }
+        fanIn = runs;
+    }
+
+
+    /**
+     * Positions that are mirror images or rotations of each other are stored
+     * once. On by default. When a final position is given, only the
+     * symmetries that leave it in place are used.
+     *
+     * @param val whether to use the board's symmetries.
+     */
+    public void setUseSymmetry(boolean val)
+    {
+        useSymmetry = val;
+    }
+
+
+    /**
+     * Initiates search.
+     *
+     * @return true if the position can be solved, false if it provably cannot.
+     */
+    public boolean search()
+    {
+        board = initialPosition.board();
+        solution = null;
+        positions = 0;
+
+        if(finalPosition != null && !board.possiblySolvable(initialPosition, finalPosition))
+        {
+            return false;
+        }
+
+        if(!useSymmetry)
+        {
+            symmetries = 0;
+        }
+        else if(finalPosition == null)
+        {
+            symmetries = board.allSymmetries();
+        }
+        else
+        {
+            symmetries = board.symmetriesFixing(finalPosition.lo(), finalPosition.hi());
+        }
+
+        if(finalPosition == null)
+        {
+            pagodas = new Pagoda[0];
+        }
+        else
+        {
+            pagodas = board.pagodas(board.holesLo & ~finalPosition.lo(), board.holesHi & ~finalPosition.hi());
+        }
+
+        try
+        {
+            return run();
+        }
+        catch(IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+        finally
+        {
+            for(File f : scratch)
+            {
+                f.delete();
+            }
+            scratch.clear();
+        }
+    }
+
+
+    /**
+     * @return the moves of the solution found by the last search, or null.
+     */
+    public List<Move> getSolution()
+    {
+        if(solution == null) { return null; }
+
+        return solution.getHistory();
+    }
+
+
+    public Position getFinalPosition()
+    {
+        return solution;
+    }
+
+
+    /**
+     * @return number of distinct positions, up to symmetry, the last search
+     * stored on disk.
+     */
+    public long getPositionCount()
+    {
+        return positions;
+    }
+
+
+    private boolean run() throws IOException
+    {
+        List<File> generations = new ArrayList<File>();
+
+        File gen0 = newScratchFile();
+        initialPosition.canonical(key, symmetries);
+        try(DataOutputStream out = writer(gen0))
+        {
+            out.writeLong(key[0]);
+            out.writeLong(key[1]);
+        }
+        generations.add(gen0);
+        positions = 1;
+
+        if(isTarget(initialPosition.lo(), initialPosition.hi()))
+        {
+            solution = initialPosition;
+            return true;
+        }
+
+        long size = 1;
+        while(size > 0)
+        {
+            List<File> runs = writeRuns(generations.get(generations.size() - 1));
+            while(runs.size() > fanIn)
+            {
+                List<File> merged = new ArrayList<File>();
+                for(int i = 0; i < runs.size(); i += fanIn)
+                {
+                    File f = newScratchFile();
+                    merge(runs.subList(i, Math.min(i + fanIn, runs.size())), f);
+                    merged.add(f);
+                }
+                runs = merged;
+            }
+
+            File next = newScratchFile();
+            size = merge(runs, next);
+            generations.add(next);
+            positions += size;
+
+            long[] found = findTarget(next);
+            if(found != null)
+            {
+                solution = recover(generations, found);
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+
+    // Expands a generation file into sorted, duplicate free run files.
+    private List<File> writeRuns(File generation) throws IOException
+    {
+        List<File> runs = new ArrayList<File>();
+        long[] buffer = new long[2*runSize];
+        int n = 0;
+
+        try(DataInputStream in = reader(generation))
+        {
+            while(true)
+            {
+                long lo;
+                long hi;
+                try
+                {
+                    lo = in.readLong();
+                    hi = in.readLong();
+                }
+                catch(EOFException e)
+                {
+                    break;
+                }
+
+                for(Position child : new Position(board, lo, hi).children())
+                {
+                    if(Pagoda.excludes(pagodas, child))
+                    {
+                        continue;
+                    }
+
+                    child.canonical(key, symmetries);
+                    buffer[2*n] = key[0];
+                    buffer[2*n + 1] = key[1];
+                    n++;
+
+                    if(n == runSize)
+                    {
+                        runs.add(writeRun(buffer, n));
+                        n = 0;
+                    }
+                }
+            }
+        }
+
+        if(n > 0)
+        {
+            runs.add(writeRun(buffer, n));
+        }
+        return runs;
+    }
+
+
+    private File writeRun(long[] buffer, int n) throws IOException
+    {
+        PairSort.sort(buffer, n);
+        n = PairSort.unique(buffer, n);
+
+        File run = newScratchFile();
+        try(DataOutputStream out = writer(run))
+        {
+            for(int i = 0; i < 2*n; i++)
+            {
+                out.writeLong(buffer[i]);
+            }
+        }
+        return run;
+    }
+
+
+    /**
+     * Merges sorted files into one, keeping one copy of every position, and
+     * deletes them.
+     *
+     * @return the number of positions written.
+     */
+    private long merge(List<File> runs, File target) throws IOException
+    {
+        Run[] heads = new Run[runs.size()];
+        long written = 0;
+
+        try(DataOutputStream out = writer(target))
+        {
+            for(int r = 0; r < heads.length; r++)
+            {
+                heads[r] = new Run(reader(runs.get(r)));
+            }
+
+            boolean any = false;
+            long lastLo = 0L;
+            long lastHi = 0L;
+            while(true)
+            {
+                Run least = null;
+                for(Run r : heads)
+                {
+                    if(r.live && (least == null || PairSort.compare(r.lo, r.hi, least.lo, least.hi) < 0))
+                    {
+                        least = r;
+                    }
+                }
+                if(least == null)
+                {
+                    break;
+                }
+
+                if(!any || least.lo != lastLo || least.hi != lastHi)
+                {
+                    out.writeLong(least.lo);
+                    out.writeLong(least.hi);
+                    lastLo = least.lo;
+                    lastHi = least.hi;
+                    any = true;
+                    written++;
+                }
+                least.advance();
+            }
+        }
+        finally
+        {
+            for(Run r : heads)
+            {
+                if(r != null)
+                {
+                    r.in.close();
+                }
+            }
+        }
+
+        for(File f : runs)
+        {
+            f.delete();
+        }
+        return written;
+    }
+
+
+    // True for a single peg that is the target, up to the symmetries used.
+    private boolean isTarget(long lo, long hi)
+    {
+        if(Long.bitCount(lo) + Long.bitCount(hi) != 1)
+        {
+            return false;
+        }
+        if(finalPosition == null)
+        {
+            return true;
+        }
+
+        long[] target = new long[2];
+        board.canonical(board.holesLo & ~finalPosition.lo(), board.holesHi & ~finalPosition.hi(), target, symmetries);
+        board.canonical(lo, hi, key, symmetries);
+        return key[0] == target[0] && key[1] == target[1];
+    }
+
+
+    // All positions of a generation have the same number of pegs, so only
+    // the last generation, of single pegs, needs to be read through.
+    private long[] findTarget(File generation) throws IOException
+    {
+        try(DataInputStream in = reader(generation))
+        {
+            for(long i = 0; i < generation.length() / RECORD; i++)
+            {
+                long lo = in.readLong();
+                long hi = in.readLong();
+                if(Long.bitCount(lo) + Long.bitCount(hi) != 1)
+                {
+                    return null;
+                }
+                if(isTarget(lo, hi))
+                {
+                    return new long[] { lo, hi };
+                }
+            }
+        }
+        return null;
+    }
+
+
+    /**
+     * Walks back from the final position through the generation files, one
+     * scan per generation, to a position that is the initial position up to
+     * symmetry. The chain is then carried by that symmetry onto the initial
+     * position and replayed from it, which gives the solution its history.
+     */
+    private Position recover(List<File> generations, long[] found) throws IOException
+    {
+        int n = generations.size() - 1;
+        Position[] chain = new Position[n + 1];
+        chain[n] = finalPosition == null
+            ? new Position(board, found[0], found[1])
+            : finalPosition.complement();
+
+        for(int k = n - 1; k >= 0; k--)
+        {
+            List<Position> predecessors = chain[k + 1].predecessors();
+            PositionSet wanted = new PositionSet();
+            for(Position p : predecessors)
+            {
+                p.canonical(key, symmetries);
+                wanted.add(key[0], key[1]);
+            }
+
+            PositionSet present = new PositionSet();
+            try(DataInputStream in = reader(generations.get(k)))
+            {
+                for(long i = 0; i < generations.get(k).length() / RECORD; i++)
+                {
+                    long lo = in.readLong();
+                    long hi = in.readLong();
+                    if(wanted.contains(lo, hi))
+                    {
+                        present.add(lo, hi);
+                    }
+                }
+            }
+
+            for(Position p : predecessors)
+            {
+                p.canonical(key, symmetries);
+                if(present.contains(key[0], key[1]))
+                {
+                    chain[k] = p;
+                    break;
+                }
+            }
+        }
+
+        int sym = symmetryOnto(chain[0], initialPosition);
+        long[] image = new long[2];
+        Position p = initialPosition;
+        for(int k = 1; k <= n; k++)
+        {
+            image[0] = chain[k].lo();
+            image[1] = chain[k].hi();
+            if(sym >= 0)
+            {
+                board.image(sym, chain[k].lo(), chain[k].hi(), image);
+            }
+
+            Position next = null;
+            for(Position child : p.children())
+            {
+                if(child.lo() == image[0] && child.hi() == image[1])
+                {
+                    next = child;
+                    break;
+                }
+            }
+            if(next == null)
+            {
+                throw new RuntimeException("recovered positions are not a jump apart");
+            }
+            p = next;
+        }
+        return p;
+    }
+
+
+    // -1 for the identity, otherwise the symmetry that maps from onto to
+    private int symmetryOnto(Position from, Position to)
+    {
+        if(from.lo() == to.lo() && from.hi() == to.hi())
+        {
+            return -1;
+        }
+
+        long[] image = new long[2];
+        for(int sym = 0; sym < board.symmetryCount; sym++)
+        {
+            if((symmetries & (1 << sym)) != 0)
+            {
+                board.image(sym, from.lo(), from.hi(), image);
+                if(image[0] == to.lo() && image[1] == to.hi())
+                {
+                    return sym;
+                }
+            }
+        }
+        throw new RuntimeException("generation files do not lead back to the initial position");
+    }
+
+
+    private File newScratchFile() throws IOException
+    {
+        File f = File.createTempFile("peg", ".gen", scratchDirectory);
+        scratch.add(f);
+        return f;
+    }
+
+
+    private static DataOutputStream writer(File f) throws IOException
+    {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(f), 1 << 16));
+    }
+
+
+    private static DataInputStream reader(File f) throws IOException
+    {
+        return new DataInputStream(new BufferedInputStream(new FileInputStream(f), 1 << 16));
+    }
+
+
+    // the head of a run file being merged
+    private static final class Run
+    {
+        private final DataInputStream in;
+        private boolean live = true;
+        private long lo;
+        private long hi;
+
+
+        Run(DataInputStream in) throws IOException
+        {
+            this.in = in;
+            advance();
+        }
+
+
+        void advance() throws IOException
+        {
+            try
+            {
+                lo = in.readLong();
+                hi = in.readLong();
+            }
+            catch(EOFException e)
+            {
+                live = false;
+            }
+        }
+    }
+}
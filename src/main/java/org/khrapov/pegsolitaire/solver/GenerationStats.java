@@ -0,0 +1,222 @@
+package org.khrapov.pegsolitaire.solver;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+
+/**
+ * What happened to one generation of a PruningSearch: how many children it
+ * had, how many of them were dropped and why, how the survivors scored, and
+ * where the time went.
+ *
+ * <p>
+ * Every child produced is either excluded by a pagoda function, a duplicate
+ * of an earlier child, or one of the children; the children that survive
+ * pruning are kept and become the next generation. In a backward search the
+ * children are the predecessors of the generation, and their scores are
+ * complement scores.
+ * </p>
+ *
+ * <p>
+ * Times are in nanoseconds, split between producing the children,
+ * deduplicating them and sorting them to prune. There is no separate time
+ * for scoring: a child's score comes with it from the jump that produced
+ * it, and is counted as producing. With more than one thread, producing
+ * the children includes computing their dedup keys, and the allocated
+ * bytes are only those of the thread running the search.
+ * </p>
+ */
+public final class GenerationStats
+{
+    private final boolean backward;
+    private final int pruningNumber;
+    private final int pegCount;
+    private final int inputSize;
+    private final int[] scoreHistogram;
+    int produced;
+    int excluded;
+    int children;
+    int kept;
+    int scoreCutoff = -1;
+    long expandNanos;
+    long dedupNanos;
+    long sortNanos;
+    long allocatedBytes;
+
+    // the children before pruning, until the report is finished
+    List<Position> unpruned;
+
+
+    GenerationStats(Board board, boolean backward, int pruningNumber, int pegCount, int inputSize)
+    {
+        this.backward = backward;
+        this.pruningNumber = pruningNumber;
+        this.pegCount = pegCount;
+        this.inputSize = inputSize;
+        scoreHistogram = new int[4*board.holeCount + 1];
+        allocatedBytes = allocatedBytes();
+    }
+
+
+    /**
+     * @return true if the children are predecessors, in a backward search.
+     */
+    public boolean isBackward()
+    {
+        return backward;
+    }
+
+
+    /**
+     * @return the pruning number of the search the generation belongs to.
+     */
+    public int getPruningNumber()
+    {
+        return pruningNumber;
+    }
+
+
+    /**
+     * @return the number of pegs of each position of the generation.
+     */
+    public int getPegCount()
+    {
+        return pegCount;
+    }
+
+
+    public int getInputSize()
+    {
+        return inputSize;
+    }
+
+
+    /**
+     * @return the number of children produced, before anything was dropped.
+     */
+    public int getProduced()
+    {
+        return produced;
+    }
+
+
+    /**
+     * @return the number of children that pagoda functions proved cannot
+     * reach the final position.
+     */
+    public int getExcluded()
+    {
+        return excluded;
+    }
+
+
+    public int getDuplicates()
+    {
+        return produced - excluded - children;
+    }
+
+
+    /**
+     * @return the number of distinct children, before pruning.
+     */
+    public int getChildren()
+    {
+        return children;
+    }
+
+
+    /**
+     * @return the number of children kept for the next generation.
+     */
+    public int getKept()
+    {
+        return kept;
+    }
+
+
+    /**
+     * @return the highest score kept, or -1 if the generation was not pruned.
+     */
+    public int getScoreCutoff()
+    {
+        return scoreCutoff;
+    }
+
+
+    /**
+     * @return the number of distinct children with each score, indexed by score.
+     */
+    public int[] getScoreHistogram()
+    {
+        return scoreHistogram;
+    }
+
+
+    /**
+     * @return the time spent producing the children. Each child is scored as
+     * it is produced, from the score of its parent, so this includes the
+     * scoring.
+     */
+    public long getExpandNanos()
+    {
+        return expandNanos;
+    }
+
+
+    public long getDedupNanos()
+    {
+        return dedupNanos;
+    }
+
+
+    public long getSortNanos()
+    {
+        return sortNanos;
+    }
+
+
+    /**
+     * @return bytes allocated while the generation was processed, or -1 if
+     * the JVM does not count allocations.
+     */
+    public long getAllocatedBytes()
+    {
+        return allocatedBytes;
+    }
+
+
+    // fills in the scores and the kept children
+    void finish(List<Position> next)
+    {
+        for(Position p : unpruned)
+        {
+            scoreHistogram[backward ? p.complementScore() : p.score()]++;
+        }
+
+        kept = next.size();
+        if(next != unpruned && kept > 0)
+        {
+            Position last = next.get(kept - 1);
+            scoreCutoff = backward ? last.complementScore() : last.score();
+        }
+        unpruned = null;
+
+        long bytes = allocatedBytes();
+        allocatedBytes = bytes < 0 || allocatedBytes < 0 ? -1 : bytes - allocatedBytes;
+    }
+
+
+    private static long allocatedBytes()
+    {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if(threads instanceof com.sun.management.ThreadMXBean)
+        {
+            com.sun.management.ThreadMXBean sun = (com.sun.management.ThreadMXBean) threads;
+            if(sun.isThreadAllocatedMemorySupported() && sun.isThreadAllocatedMemoryEnabled())
+            {
+                return sun.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
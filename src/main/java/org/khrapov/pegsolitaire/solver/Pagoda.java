@@ -0,0 +1,124 @@
+package org.khrapov.pegsolitaire.solver;
+
+/**
+ * A pagoda function assigns a weight to every hole such that for every jump
+ * (from, over, to) on the board weight(from) + weight(over) &gt;= weight(to).
+ * The pagoda value of a position, the sum of the weights of its pegs, can
+ * then never increase as the game goes on. A position whose value is below
+ * that of the target can be discarded: it will never reach the target.
+ *
+ * A backward search asks the opposite question: can a position be reached
+ * from a given start? Undoing jumps on a board is making jumps on its
+ * complement, so such a pagoda is evaluated on the complement of the
+ * position, with the complement of the start as its target.
+ *
+ * Values are summed with byte-chunk lookup tables, the same way Board builds
+ * symmetry images, so evaluating a position costs one lookup per byte.
+ */
+final class Pagoda
+{
+    // golden ratio conjugate: OMEGA + OMEGA^2 == 1
+    static final double OMEGA = (Math.sqrt(5.0) - 1.0) / 2.0;
+
+    private static final double EPSILON = 1e-9;
+
+    private final double[] table;
+    private final int chunks;
+    private final double target;
+    private final long flipLo;
+    private final long flipHi;
+
+
+    Pagoda(double[] weights, long targetLo, long targetHi)
+    {
+        this(weights, targetLo, targetHi, 0L, 0L);
+    }
+
+
+    /**
+     * @param flipLo bits to flip in every position before it is evaluated,
+     *               all the holes of the board for a backward search.
+     * @param flipHi high word of the same.
+     */
+    Pagoda(double[] weights, long targetLo, long targetHi, long flipLo, long flipHi)
+    {
+        this.flipLo = flipLo;
+        this.flipHi = flipHi;
+
+        chunks = (weights.length + 7) / 8;
+        table = new double[chunks << 8];
+
+        for(int k = 0; k < chunks; k++)
+        {
+            for(int b = 1; b < 256; b++)
+            {
+                double sum = 0.0;
+                for(int bit = 0; bit < 8; bit++)
+                {
+                    int i = 8*k + bit;
+                    if((b & (1 << bit)) != 0 && i < weights.length)
+                    {
+                        sum += weights[i];
+                    }
+                }
+                table[(k << 8) | b] = sum;
+            }
+        }
+
+        target = value(targetLo, targetHi);
+    }
+
+
+    double value(long lo, long hi)
+    {
+        double sum = 0.0;
+        for(int k = 0; k < chunks; k++)
+        {
+            long word = k < 8 ? lo >>> (8*k) : hi >>> (8*(k - 8));
+            sum += table[(k << 8) | (int) (word & 0xFF)];
+        }
+        return sum;
+    }
+
+
+    /**
+     * @return true if the position provably cannot reach the target.
+     */
+    boolean excludes(Position p)
+    {
+        return value(p.lo() ^ flipLo, p.hi() ^ flipHi) < target - EPSILON;
+    }
+
+
+    static boolean excludes(Pagoda[] pagodas, Position p)
+    {
+        for(Pagoda pagoda : pagodas)
+        {
+            if(pagoda.excludes(p))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * @return true if the weights satisfy the pagoda condition for every
+     * jump of the board.
+     */
+    static boolean isPagoda(Board board, double[] weights)
+    {
+        for(int j = 0; j < board.jumpCount; j++)
+        {
+            double from = weights[board.jumpFrom[j]];
+            double over = weights[board.jumpOver[j]];
+            double to = weights[board.jumpTo[j]];
+            if(from + over < to - EPSILON)
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+}
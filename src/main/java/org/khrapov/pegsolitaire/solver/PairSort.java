@@ -0,0 +1,124 @@
+package org.khrapov.pegsolitaire.solver;
+
+/**
+ * Sorting of packed positions held as (lo, hi) pairs in a long[], the
+ * layout PositionSet uses. Pairs are ordered as unsigned 128 bit numbers,
+ * hi word first. Sorting the array in place avoids boxing a Position or a
+ * key object for every entry, which matters for the run files of
+ * ExternalSearch.
+ */
+final class PairSort
+{
+    private PairSort()
+    {
+    }
+
+
+    static int compare(long lo1, long hi1, long lo2, long hi2)
+    {
+        int c = Long.compareUnsigned(hi1, hi2);
+        return c != 0 ? c : Long.compareUnsigned(lo1, lo2);
+    }
+
+
+    /**
+     * Sorts the first n pairs of the array.
+     */
+    static void sort(long[] pairs, int n)
+    {
+        quicksort(pairs, 0, n - 1);
+    }
+
+
+    /**
+     * Removes repeated pairs from the first n pairs of a sorted array.
+     *
+     * @return the number of distinct pairs, now at the front of the array.
+     */
+    static int unique(long[] pairs, int n)
+    {
+        if(n == 0)
+        {
+            return 0;
+        }
+
+        int m = 1;
+        for(int i = 1; i < n; i++)
+        {
+            if(pairs[2*i] != pairs[2*m - 2] || pairs[2*i + 1] != pairs[2*m - 1])
+            {
+                pairs[2*m] = pairs[2*i];
+                pairs[2*m + 1] = pairs[2*i + 1];
+                m++;
+            }
+        }
+        return m;
+    }
+
+
+    private static void quicksort(long[] a, int left, int right)
+    {
+        while(right - left > 16)
+        {
+            // median of three, moved to the left end
+            int mid = (left + right) >>> 1;
+            if(less(a, mid, left)) { swap(a, mid, left); }
+            if(less(a, right, left)) { swap(a, right, left); }
+            if(less(a, right, mid)) { swap(a, right, mid); }
+            swap(a, left, mid);
+            long pivotLo = a[2*left];
+            long pivotHi = a[2*left + 1];
+
+            int i = left;
+            int j = right + 1;
+            while(true)
+            {
+                do { i++; } while(i <= right && compare(a[2*i], a[2*i + 1], pivotLo, pivotHi) < 0);
+                do { j--; } while(compare(a[2*j], a[2*j + 1], pivotLo, pivotHi) > 0);
+                if(i >= j)
+                {
+                    break;
+                }
+                swap(a, i, j);
+            }
+            swap(a, left, j);
+
+            // recurse into the smaller side, loop on the larger
+            if(j - left < right - j)
+            {
+                quicksort(a, left, j - 1);
+                left = j + 1;
+            }
+            else
+            {
+                quicksort(a, j + 1, right);
+                right = j - 1;
+            }
+        }
+
+        for(int i = left + 1; i <= right; i++)
+        {
+            for(int k = i; k > left && less(a, k, k - 1); k--)
+            {
+                swap(a, k, k - 1);
+            }
+        }
+    }
+
+
+    private static boolean less(long[] a, int i, int j)
+    {
+        return compare(a[2*i], a[2*i + 1], a[2*j], a[2*j + 1]) < 0;
+    }
+
+
+    private static void swap(long[] a, int i, int j)
+    {
+        long lo = a[2*i];
+        long hi = a[2*i + 1];
+        a[2*i] = a[2*j];
+        a[2*i + 1] = a[2*j + 1];
+        a[2*j] = lo;
+        a[2*j + 1] = hi;
+    }
+}
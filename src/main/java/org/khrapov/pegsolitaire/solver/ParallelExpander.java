@@ -0,0 +1,259 @@
+package org.khrapov.pegsolitaire.solver;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * ParallelExpander produces the deduplicated children of a generation on a
+ * ForkJoinPool. The result is identical to the sequential expansion in
+ * PruningSearch: the same children, in the same order, with the first
+ * occurrence of every duplicate kept.
+ *
+ * The work is done in two phases.
+ *
+ * The generation is cut into contiguous chunks, and each chunk is expanded
+ * by one task. It drops children excluded by the pagoda functions, computes
+ * the dedup key of every other child and groups the children by stripe, a
+ * few high bits of the key's hash. In a backward search the "children" are
+ * the predecessors of the positions in the generation.
+ *
+ * The dedup set is striped the same way. Each stripe is a PositionSet owned
+ * by exactly one task, which walks the children of its stripe chunk by
+ * chunk, in generation order, and marks the ones it has not seen. No two
+ * tasks touch the same set, so no locks are needed, and each stripe sees
+ * its keys in the same order the sequential code would.
+ */
+final class ParallelExpander
+{
+    private final ForkJoinPool pool;
+    private final int parallelism;
+    private final int stripeShift;
+    private final PositionSet[] stripes;
+    private final BooleanSupplier expired;
+
+
+    // An expansion cut short by expired returns no children.
+    ParallelExpander(int parallelism, BooleanSupplier expired)
+    {
+        this.parallelism = parallelism;
+        this.expired = expired;
+        pool = new ForkJoinPool(parallelism);
+
+        int bits = 0;
+        while((1 << bits) < parallelism)
+        {
+            bits++;
+        }
+        stripeShift = 32 - bits;
+        stripes = new PositionSet[1 << bits];
+        for(int s = 0; s < stripes.length; s++)
+        {
+            stripes[s] = new PositionSet();
+        }
+    }
+
+
+    void shutdown()
+    {
+        pool.shutdown();
+    }
+
+
+    List<Position> expand(List<Position> generation, boolean backward, boolean useSymmetry, Pagoda[] pagodas)
+    {
+        return expand(generation, backward, useSymmetry, pagodas, null);
+    }
+
+
+    // Times the two phases into stats, if it is not null.
+    List<Position> expand(List<Position> generation, boolean backward, boolean useSymmetry, Pagoda[] pagodas, GenerationStats stats)
+    {
+        long start = System.nanoTime();
+        int chunkCount = Math.min(generation.size(), 4*parallelism);
+        Chunk[] chunks = new Chunk[chunkCount];
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+
+        for(int c = 0; c < chunkCount; c++)
+        {
+            final Chunk chunk = new Chunk(generation.subList(
+                (int) ((long) generation.size()*c/chunkCount),
+                (int) ((long) generation.size()*(c + 1)/chunkCount)));
+            chunks[c] = chunk;
+            tasks.add(() -> {
+                chunk.expand(backward, useSymmetry, pagodas, stripes.length, stripeShift, expired);
+                return null;
+            });
+        }
+        invokeAll(tasks);
+        long expanded = System.nanoTime();
+        for(Chunk chunk : chunks)
+        {
+            if(chunk.cutShort)
+            {
+                return new ArrayList<Position>();
+            }
+        }
+
+        tasks.clear();
+        for(int s = 0; s < stripes.length; s++)
+        {
+            final int stripe = s;
+            tasks.add(() -> {
+                dedupStripe(chunks, stripe);
+                return null;
+            });
+        }
+        invokeAll(tasks);
+
+        List<Position> children = new ArrayList<Position>();
+        for(Chunk chunk : chunks)
+        {
+            for(int i = 0; i < chunk.children.size(); i++)
+            {
+                if(chunk.keep[i])
+                {
+                    children.add(chunk.children.get(i));
+                }
+            }
+        }
+
+        if(stats != null)
+        {
+            for(Chunk chunk : chunks)
+            {
+                stats.produced += chunk.produced;
+                stats.excluded += chunk.produced - chunk.children.size();
+            }
+            stats.expandNanos = expanded - start;
+            stats.dedupNanos = System.nanoTime() - expanded;
+        }
+        return children;
+    }
+
+
+    private void dedupStripe(Chunk[] chunks, int stripe)
+    {
+        PositionSet seen = stripes[stripe];
+        seen.clear();
+
+        for(Chunk chunk : chunks)
+        {
+            for(int k = chunk.stripeStart[stripe]; k < chunk.stripeStart[stripe + 1]; k++)
+            {
+                int i = chunk.byStripe[k];
+                if(seen.add(chunk.keys[2*i], chunk.keys[2*i + 1]))
+                {
+                    chunk.keep[i] = true;
+                }
+            }
+        }
+    }
+
+
+    private void invokeAll(List<Callable<Void>> tasks)
+    {
+        try
+        {
+            for(Future<Void> f : pool.invokeAll(tasks))
+            {
+                f.get();
+            }
+        }
+        catch(InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        }
+        catch(ExecutionException e)
+        {
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+
+    private static final class Chunk
+    {
+        private final List<Position> parents;
+        private List<Position> children;
+        private long[] keys;       // lo, hi pairs, one per child
+        private int[] byStripe;    // child indices grouped by stripe, in order
+        private int[] stripeStart; // where each stripe begins in byStripe
+        private boolean[] keep;
+        private int produced;
+        private boolean cutShort = false;
+
+
+        Chunk(List<Position> parents)
+        {
+            this.parents = parents;
+        }
+
+
+        void expand(boolean backward, boolean useSymmetry, Pagoda[] pagodas, int stripeCount, int stripeShift, BooleanSupplier expired)
+        {
+            children = new ArrayList<Position>();
+            int expanded = 0;
+            for(Position p : parents)
+            {
+                if((++expanded & 255) == 0 && expired.getAsBoolean())
+                {
+                    cutShort = true;
+                    return;
+                }
+
+                for(Position child : backward ? p.predecessors() : p.children())
+                {
+                    produced++;
+                    if(!Pagoda.excludes(pagodas, child))
+                    {
+                        children.add(child);
+                    }
+                }
+            }
+
+            int n = children.size();
+            keys = new long[2*n];
+            keep = new boolean[n];
+            int[] stripe = new int[n];
+            stripeStart = new int[stripeCount + 1];
+            long[] key = new long[2];
+
+            for(int i = 0; i < n; i++)
+            {
+                Position child = children.get(i);
+                if(useSymmetry)
+                {
+                    child.canonical(key);
+                }
+                else
+                {
+                    key[0] = child.lo();
+                    key[1] = child.hi();
+                }
+                keys[2*i] = key[0];
+                keys[2*i + 1] = key[1];
+
+                stripe[i] = stripeCount == 1 ? 0 : PositionSet.hash(key[0], key[1]) >>> stripeShift;
+                stripeStart[stripe[i] + 1]++;
+            }
+
+            for(int s = 0; s < stripeCount; s++)
+            {
+                stripeStart[s + 1] += stripeStart[s];
+            }
+
+            int[] next = Arrays.copyOf(stripeStart, stripeCount);
+            byStripe = new int[n];
+            for(int i = 0; i < n; i++)
+            {
+                byStripe[next[stripe[i]]++] = i;
+            }
+        }
+    }
+}
@@ -10,15 +10,25 @@ import java.util.List;
  *
  * There is no public constructor. The initial Position is constructed
  * by the Board class.
+ *
+ * The pegs are packed into a bitboard of two longs, one bit per hole of
+ * the board, numbered as Board numbers them. A jump is applied by XOR-ing
+ * the masks of the three holes involved, and peg counts are taken with
+ * Long.bitCount.
  */
 public class Position
 {
     private final Board board;
-    private final boolean[] occupied;
-    private final List<Move> history;
+    private long lo;
+    private long hi;
+
+    // The history is a chain of parent pointers, each link holding the
+    // index of the jump (in the Board's jump table) that produced it.
+    // Siblings share their parent's chain; the List<Move> is only built
+    // when getHistory() is called.
+    private final Position parent;
+    private final int jump;
 
-    private String id = null;
-    private String symmID = null;
     private int compactnessScore = -1;
 
 
@@ -27,21 +37,24 @@ public class Position
     // may also be used by in-package unit tests.
     Position(Board board)
     {
-        this.board = board;
-        occupied = new boolean[board.X*board.Y];
-        history = new ArrayList<Move>();
+        this(board, board.holesLo, board.holesHi, null, -1);
+    }
 
-        for(int i = 0; i < occupied.length; i++)
-        {
-            if(board.allowed(i))
-            {
-                occupied[i] = true;
-            }
-            else
-            {
-                occupied[i] = false;
-            }
-        }
+
+    // a position read back from its packed form, without history
+    Position(Board board, long lo, long hi)
+    {
+        this(board, lo, hi, null, -1);
+    }
+
+
+    private Position(Board board, long lo, long hi, Position parent, int jump)
+    {
+        this.board = board;
+        this.lo = lo;
+        this.hi = hi;
+        this.parent = parent;
+        this.jump = jump;
     }
 
 
@@ -49,8 +62,7 @@ public class Position
     {
         if(board.allowed(x, y))
         {
-            int i = y*board.X + x;
-            return occupied[i];
+            return occupied(board.hole(x, y));
         }
         else
         {
@@ -59,143 +71,120 @@ public class Position
     }
 
 
-    public Position copy()
+    // whether hole i holds a peg
+    private boolean occupied(int i)
     {
-        Position p = new Position(this.board);
-        for(int i = 0; i < occupied.length; i++)
-        {
-            p.occupied[i] = this.occupied[i];
-        }
-        return p;
+        return ((lo & Board.lo(i)) | (hi & Board.hi(i))) != 0L;
     }
 
 
-    public void set(int x, int y, boolean state)
+    public Position copy()
     {
-        occupied[y*board.X + x] = state;
+        return new Position(this.board, lo, hi, null, -1);
     }
 
 
-    public boolean isComplement(Position other)
+    public void set(int x, int y, boolean state)
     {
-        for(int i = 0; i < occupied.length; i++)
+        int i = board.hole(x, y);
+        if(i >= 0)
         {
-            if(board.allowed(i))
-            {
-                if (occupied[i] == other.occupied[i])
-                {
-                    return false;
-                }
-            }
+            set(i, state);
         }
-        return true;
     }
 
 
-    void set(int i, boolean state)
+    /**
+     * @return a position with a peg on every hole of the board this one
+     * leaves empty and vice versa, without history.
+     */
+    public Position complement()
     {
-        occupied[i] = state;
+        return new Position(board, board.holesLo & ~lo, board.holesHi & ~hi, null, -1);
     }
 
 
-    boolean isFinal()
+    public boolean isComplement(Position other)
     {
-        int counter = 0;
-
-        for(int i = 0; i < occupied.length; i++)
-        {
-            if(occupied[i])
-            {
-                counter++;
-            }
-        }
-
-        return counter == 1;
+        return ((lo ^ other.lo) & board.holesLo) == board.holesLo
+            && ((hi ^ other.hi) & board.holesHi) == board.holesHi;
     }
 
 
-    String id()
+    // puts a peg in hole i, or takes it out
+    void set(int i, boolean state)
     {
-        if(id == null)
+        compactnessScore = -1;
+        if(state)
         {
-            id = calculateID();
+            lo |= Board.lo(i);
+            hi |= Board.hi(i);
+        }
+        else
+        {
+            lo &= ~Board.lo(i);
+            hi &= ~Board.hi(i);
         }
-
-        return id;
     }
 
 
-    private String calculateID()
+    /**
+     * @return Conway's position class, a number from 0 to 15 that no jump
+     * changes. See Board.positionClass. Since every child has the class of
+     * its parent, the class only ever needs to be checked before a search.
+     */
+    public int positionClass()
     {
-        StringBuilder sb = new StringBuilder(board.X*board.Y);
-        for(int i = 0; i < occupied.length; i++)
-        {
-            if(occupied[i])
-            {
-                sb.append('1');
-            }
-            else
-            {
-                sb.append('0');
-            }
-        }
-        return sb.toString();
+        return board.positionClass(lo, hi);
     }
 
 
-    String symmID()
+    int pegCount()
     {
-        if(symmID == null)
-        {
-            symmID = calculateSymmID();
-        }
+        return Long.bitCount(lo) + Long.bitCount(hi);
+    }
+
 
-        return symmID;
+    boolean isFinal()
+    {
+        return pegCount() == 1;
     }
 
 
-    private String calculateSymmID()
+    public Board board()
     {
-        SymmetryHelper h = new SymmetryHelper(board.X, board.Y, this.occupied);
-        List<String> l = new ArrayList<String>();
-        l.add(h.id());
+        return board;
+    }
 
-        if(board.rotate270)
-        {
-            l.add(h.rotate270().id());
-        }
 
-        if(board.rotate180)
-        {
-            l.add(h.rotate180().id());
-        }
+    long lo()
+    {
+        return lo;
+    }
 
-        if(board.rotate90)
-        {
-            l.add(h.rotate90().id());
-        }
 
-        if(board.verticalFlip)
-        {
-            l.add(h.verticalFlip().id());
-        }
+    long hi()
+    {
+        return hi;
+    }
 
-        if(board.horizontalFlip)
-        {
-            l.add(h.horizontalFlip().id());
-        }
 
-        if(board.rightDiagonalFlip)
-        {
-            l.add(h.rightDiagonalFlip().id());
-        }
+    /**
+     * Writes the canonical packed form of this position into key[0] (low
+     * word) and key[1] (high word): the smallest bitboard among all the
+     * images of this position under the symmetries of the board. See
+     * Board.canonical.
+     */
+    void canonical(long[] key)
+    {
+        board.canonical(lo, hi, key);
+    }
 
-        if(board.leftDiagonalFlip)
-        {
-            l.add(h.leftDiagonalFlip().id());
-        }
 
-        return Collections.min(l);
+    // canonical form under a subgroup of the board's symmetries
+    void canonical(long[] key, int symmetries)
+    {
+        board.canonical(lo, hi, key, symmetries);
     }
 
 
@@ -224,127 +213,202 @@ public class Position
      * @return int measure of the board position's border length. The longer the border's
      * length, the less likely the position is to yield a solution. Shorter border
      * means more compact position, that is more likely to produce a solution.
+     *
+     * Only the pegs are visited, lowest bit first: each counts its four sides
+     * less the neighbours that hold a peg too, from the Board's neighbour masks.
+     *
+     * Children do not call this: beget() derives their score from the parent's,
+     * see scoreAfter().
      */
     int calculateCompactnessScore()
     {
         int score = 0;
 
-        for(int i = 0; i < occupied.length; i++) {
-            if(board.allowed(i) && occupied[i])
-            {
-                int x = i % board.X;
-                int y = i / board.Y;
-                if(empty(x, y+1)) {
-                    score += 1;
-                }
-                if(empty(x, y-1)) {
-                    score += 1;
-                }
-                if(empty(x+1, y)) {
-                    score += 1;
-                }
-                if(empty(x-1, y)) {
-                    score += 1;
-                }
-            }
+        for(long pegs = lo; pegs != 0L; pegs &= pegs - 1) {
+            score += 4 - neighbours(Long.numberOfTrailingZeros(pegs), lo, hi);
+        }
+        for(long pegs = hi; pegs != 0L; pegs &= pegs - 1) {
+            score += 4 - neighbours(64 + Long.numberOfTrailingZeros(pegs), lo, hi);
         }
 
         return score;
     }
 
 
-    boolean empty(int x, int y)
+    /**
+     * The compactness score of the complement of this position, the border
+     * of its holes rather than of its pegs. Every border side between a peg
+     * and a hole counts in both; they differ only by the sides facing outside
+     * the board, which count for the pegs in one and for the holes in the
+     * other. A backward search ranks positions by this score.
+     */
+    int complementScore()
     {
-        if(x < 0) return true;
-        if(y < 0) return true;
-        if(x >= board.X) return true;
-        if(y >= board.Y) return true;
+        int outside = 0;
+        for(int k = 0; k < 4; k++)
+        {
+            outside += Long.bitCount(lo & board.outsideLo[k]) + Long.bitCount(hi & board.outsideHi[k]);
+        }
 
-        int pos = y*board.X + x;
-        if(!board.allowed(pos)) return true;
-        if(!occupied[pos]) return true;
-        return false;
+        return score() - 2*outside + board.outsideSides;
     }
 
 
-    boolean isValidMove(int x1, int y1, int x2, int y2)
+    /**
+     * The border length is 4 for every peg minus 2 for every pair of
+     * neighbouring pegs. A jump removes the pegs on the from and over holes
+     * and puts one on the to hole, so only the neighbourhoods of those three
+     * holes change and the child's score follows from the parent's in O(1).
+     */
+    private int scoreAfter(int jump, long childLo, long childHi)
     {
-        if(x1 < 0) return false;
-        if(x2 < 0) return false;
-        if(y1 < 0) return false;
-        if(y2 < 0) return false;
-        if(x1 >= board.X) return false;
-        if(x2 >= board.X) return false;
-        if(y1 >= board.Y) return false;
-        if(y2 >= board.Y) return false;
+        int from = board.jumpFrom[jump];
+        int over = board.jumpOver[jump];
+        int to = board.jumpTo[jump];
+
+        // neighbouring pairs lost with from and over; they were neighbours themselves
+        int lost = neighbours(from, lo, hi) + neighbours(over, lo, hi) - 1;
+        int gained = neighbours(to, childLo, childHi);
+
+        return score() - 4 - 2*(gained - lost);
+    }
+
 
-        int i1 = y1*board.X + x1;
-        int i2 = y2*board.X + x2;
+    /**
+     * The reverse of scoreAfter: undoing a jump takes the peg off the to
+     * hole and puts pegs back on the from and over holes.
+     */
+    private int scoreBefore(int jump, long parentLo, long parentHi)
+    {
+        int from = board.jumpFrom[jump];
+        int over = board.jumpOver[jump];
+        int to = board.jumpTo[jump];
 
-        if(!board.allowed(i1)) return false;
-        if(!board.allowed(i2)) return false;
-        if(!occupied[i1]) return false;
-        if(occupied[i2]) return false;
+        int lost = neighbours(to, lo, hi);
+        int gained = neighbours(from, parentLo, parentHi) + neighbours(over, parentLo, parentHi) - 1;
 
-        return true;
+        return score() + 4 - 2*(gained - lost);
     }
 
 
-    // private pseudo constructor. To be used by the children method
-    private Position beget(int x1, int y1, int x2, int y2, int x3, int y3)
+    // the pegs of (lo, hi) next to hole i
+    private int neighbours(int i, long lo, long hi)
     {
-        Position child = new Position(board);
-        for(int i = 0; i < occupied.length; i++)
-        {
-            child.set(i, occupied[i]);
-        }
+        return Long.bitCount(lo & board.neighboursLo[i]) + Long.bitCount(hi & board.neighboursHi[i]);
+    }
 
-        child.set(x1, y1, false);
-        child.set(x2, y2, false);
-        child.set(x3, y3, true);
 
-        child.history.addAll(this.history);
-        child.history.add(new Move(x1, y1, x3, y3));
+    // pseudo constructor. To be used by the children method, and by searches
+    // that replay jumps they already know to be legal.
+    Position beget(int jump)
+    {
+        Position child = new Position(board,
+            lo ^ board.jumpPegsLo[jump] ^ board.jumpHoleLo[jump],
+            hi ^ board.jumpPegsHi[jump] ^ board.jumpHoleHi[jump],
+            this, jump);
+        child.compactnessScore = scoreAfter(jump, child.lo, child.hi);
 
         return child;
     }
 
 
+    /**
+     * Walks the Board's precompiled jump table. A jump is legal when the
+     * from and over cells are occupied and the to cell is empty.
+     */
     List<Position> children()
     {
         List<Position> children = new ArrayList<Position>();
 
-        for(int i = 0; i < occupied.length; i++) {
-            if(board.allowed(i) && occupied[i])
+        for(int j = 0; j < board.jumpCount; j++)
+        {
+            long pegsLo = board.jumpPegsLo[j];
+            long pegsHi = board.jumpPegsHi[j];
+
+            if((lo & pegsLo) == pegsLo && (hi & pegsHi) == pegsHi
+                && (lo & board.jumpHoleLo[j]) == 0L && (hi & board.jumpHoleHi[j]) == 0L)
             {
-                int x = i % board.X;
-                int y = i / board.X;
+                children.add(beget(j));
+            }
+        }
 
-                if(isValidMove(x, y+1, x, y+2)) {
-                    children.add(beget(x, y, x, y+1, x, y+2));
-                }
+        return children;
+    }
 
-                if(isValidMove(x, y-1, x, y-2)) {
-                    children.add(beget(x, y, x, y-1, x, y-2));
-                }
 
-                if(isValidMove(x+1, y, x+2, y)) {
-                    children.add(beget(x, y, x+1, y, x+2, y));
-                }
+    // Undoes the jump: the same three cells flip as in beget. The result
+    // records this position as its parent, so the history of a position
+    // produced by predecessors() lists the jumps undone, latest jump first.
+    private Position unbeget(int jump)
+    {
+        Position predecessor = new Position(board,
+            lo ^ board.jumpPegsLo[jump] ^ board.jumpHoleLo[jump],
+            hi ^ board.jumpPegsHi[jump] ^ board.jumpHoleHi[jump],
+            this, jump);
+        predecessor.compactnessScore = scoreBefore(jump, predecessor.lo, predecessor.hi);
 
-                if(isValidMove(x-1, y, x-2, y)) {
-                    children.add(beget(x, y, x-1, y, x-2, y));
-                }
+        return predecessor;
+    }
+
+
+    /**
+     * The positions from which a single jump leads to this one. A jump can be
+     * undone when its to cell is occupied and its from and over cells are
+     * empty; undoing it turns empty, empty, peg into peg, peg, empty.
+     */
+    List<Position> predecessors()
+    {
+        List<Position> predecessors = new ArrayList<Position>();
+
+        for(int j = 0; j < board.jumpCount; j++)
+        {
+            long pegsLo = board.jumpPegsLo[j];
+            long pegsHi = board.jumpPegsHi[j];
 
+            if((lo & pegsLo) == 0L && (hi & pegsHi) == 0L
+                && ((lo & board.jumpHoleLo[j]) | (hi & board.jumpHoleHi[j])) != 0L)
+            {
+                predecessors.add(unbeget(j));
             }
         }
 
-        return children;
+        return predecessors;
+    }
+
+
+    // index of the jump that produced this position, -1 if it has no history
+    int jump()
+    {
+        return jump;
+    }
+
+
+    // jump indices of the history, oldest first
+    int[] getJumps()
+    {
+        int n = 0;
+        for(Position p = this; p.parent != null; p = p.parent)
+        {
+            n++;
+        }
+
+        int[] jumps = new int[n];
+        for(Position p = this; p.parent != null; p = p.parent)
+        {
+            jumps[--n] = p.jump;
+        }
+        return jumps;
     }
 
 
     List<Move> getHistory()
     {
+        List<Move> history = new ArrayList<Move>();
+        for(Position p = this; p.parent != null; p = p.parent)
+        {
+            history.add(board.jumpMove[p.jump]);
+        }
+        Collections.reverse(history);
         return history;
     }
 
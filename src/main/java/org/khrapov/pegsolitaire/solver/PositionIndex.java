@@ -0,0 +1,92 @@
+package org.khrapov.pegsolitaire.solver;
+
+/**
+ * PositionIndex maps packed positions to the order in which they were added,
+ * 0, 1, 2, ... It is laid out like PositionSet, with the ordinals in a
+ * parallel int array, and is used to join two lists of positions on their
+ * bitboards.
+ */
+final class PositionIndex
+{
+    private final long[] keys; // lo, hi pairs
+    private final int[] ordinals;
+    private final int mask;
+    private int size;
+    private int emptyOrdinal = -1; // (0, 0) marks a free slot
+
+
+    PositionIndex(int expectedSize)
+    {
+        int capacity = 16;
+        while(capacity < 2*expectedSize)
+        {
+            capacity <<= 1;
+        }
+        keys = new long[2*capacity];
+        ordinals = new int[capacity];
+        mask = capacity - 1;
+    }
+
+
+    int size()
+    {
+        return size;
+    }
+
+
+    /**
+     * Adds the key if it is not present yet. The index has a fixed capacity:
+     * at most the expected size given to the constructor may be added.
+     *
+     * @return the ordinal of the key.
+     */
+    int add(long lo, long hi)
+    {
+        if(lo == 0L && hi == 0L)
+        {
+            if(emptyOrdinal < 0)
+            {
+                emptyOrdinal = size++;
+            }
+            return emptyOrdinal;
+        }
+
+        int slot = PositionSet.hash(lo, hi) & mask;
+        while(keys[2*slot] != 0L || keys[2*slot + 1] != 0L)
+        {
+            if(keys[2*slot] == lo && keys[2*slot + 1] == hi)
+            {
+                return ordinals[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[2*slot] = lo;
+        keys[2*slot + 1] = hi;
+        ordinals[slot] = size;
+        return size++;
+    }
+
+
+    /**
+     * @return the ordinal of the key, or -1 if it was never added.
+     */
+    int get(long lo, long hi)
+    {
+        if(lo == 0L && hi == 0L)
+        {
+            return emptyOrdinal;
+        }
+
+        int slot = PositionSet.hash(lo, hi) & mask;
+        while(keys[2*slot] != 0L || keys[2*slot + 1] != 0L)
+        {
+            if(keys[2*slot] == lo && keys[2*slot + 1] == hi)
+            {
+                return ordinals[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,159 @@
+package org.khrapov.pegsolitaire.solver;
+
+import java.util.Arrays;
+
+/**
+ * PositionSet is an open-addressing hash set of packed positions. Each key
+ * is the pair of longs that make up a Position's bitboard (or its canonical
+ * form under symmetry). Keys are stored interleaved in a single long[] and
+ * probed linearly, so adding a key allocates nothing unless the table has
+ * to grow.
+ *
+ * The set is meant to be cleared and reused from one generation to the
+ * next. Clearing keeps the capacity the previous generation needed.
+ */
+final class PositionSet
+{
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys; // lo, hi pairs
+    private int mask;    // capacity - 1, capacity is a power of two
+    private int size;
+    private boolean containsEmpty; // (0, 0) marks a free slot
+
+
+    PositionSet()
+    {
+        this(MIN_CAPACITY);
+    }
+
+
+    PositionSet(int expectedSize)
+    {
+        int capacity = MIN_CAPACITY;
+        while(capacity < 2*expectedSize)
+        {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+
+    int size()
+    {
+        return size;
+    }
+
+
+    void clear()
+    {
+        Arrays.fill(keys, 0L);
+        size = 0;
+        containsEmpty = false;
+    }
+
+
+    boolean contains(long lo, long hi)
+    {
+        if(lo == 0L && hi == 0L)
+        {
+            return containsEmpty;
+        }
+
+        int slot = hash(lo, hi) & mask;
+        while(true)
+        {
+            long klo = keys[2*slot];
+            long khi = keys[2*slot + 1];
+            if(klo == lo && khi == hi)
+            {
+                return true;
+            }
+            if(klo == 0L && khi == 0L)
+            {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+
+    /**
+     * @return true if the key was not in the set before.
+     */
+    boolean add(long lo, long hi)
+    {
+        if(lo == 0L && hi == 0L)
+        {
+            if(containsEmpty)
+            {
+                return false;
+            }
+            containsEmpty = true;
+            size++;
+            return true;
+        }
+
+        int slot = hash(lo, hi) & mask;
+        while(true)
+        {
+            long klo = keys[2*slot];
+            long khi = keys[2*slot + 1];
+            if(klo == lo && khi == hi)
+            {
+                return false;
+            }
+            if(klo == 0L && khi == 0L)
+            {
+                keys[2*slot] = lo;
+                keys[2*slot + 1] = hi;
+                size++;
+                if(2*size > mask)
+                {
+                    grow();
+                }
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+
+    static int hash(long lo, long hi)
+    {
+        long h = lo * 0x9E3779B97F4A7C15L + hi * 0xC2B2AE3D27D4EB4FL;
+        h ^= h >>> 31;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+
+    private void allocate(int capacity)
+    {
+        keys = new long[2*capacity];
+        mask = capacity - 1;
+    }
+
+
+    private void grow()
+    {
+        long[] old = keys;
+        allocate(2*(mask + 1));
+
+        for(int i = 0; i < old.length; i += 2)
+        {
+            long lo = old[i];
+            long hi = old[i + 1];
+            if(lo != 0L || hi != 0L)
+            {
+                int slot = hash(lo, hi) & mask;
+                while(keys[2*slot] != 0L || keys[2*slot + 1] != 0L)
+                {
+                    slot = (slot + 1) & mask;
+                }
+                keys[2*slot] = lo;
+                keys[2*slot + 1] = hi;
+            }
+        }
+    }
+}
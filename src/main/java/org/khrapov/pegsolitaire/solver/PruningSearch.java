@@ -1,10 +1,15 @@
 package org.khrapov.pegsolitaire.solver;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Class PruningSearch encapsulates the pruning search algorithm of this Peg Solitaire solver.
@@ -15,6 +20,34 @@ public class PruningSearch {
     private int pruningNumber = 200;
     private boolean useSymmetry = false;
     private final List<Position> solutions;
+    private final PositionSet dedup = new PositionSet();
+    private final long[] key = new long[2];
+    private int parallelism = 1;
+    private boolean usePagodas = true;
+    private boolean bidirectional = false;
+    private int backwardLimit = 1 << 16;
+    private List<List<Position>> backwardGenerations = null;
+    private boolean backward = false;
+    private boolean diverse = false;
+    private final List<Position> startPositions = new ArrayList<Position>();
+    private Pagoda[] pagodas = new Pagoda[0];
+    private ParallelExpander expander = null;
+    private boolean pruned = false;
+    private boolean hasDeadline = false;
+    private long deadline; // System.nanoTime() at which to give up
+    private boolean timedOut = false;
+    private CancellationToken token = null;
+    private boolean cancelled = false;
+    private List<Position> reached = null; // the last generation completed
+    private boolean reachedBackward = false;
+    private SearchListener listener = null;
+    private GenerationStats stats = null; // of the generation being expanded
+
+    // Kept by minimumPruningNumber() and reliablePruningNumber() between
+    // their searches: the generations no search has pruned so far, and the
+    // largest generation up to each.
+    private List<List<Position>> exact = null;
+    private List<Integer> exactLargest = null;
 
 
     /**
@@ -46,7 +79,9 @@ public class PruningSearch {
      *
      * <p>
      * Setting this to 0 (zero) will disable the pruning. In such a case the full search
-     * tree is examined. This will take hours.
+     * tree is examined. This will take hours. To find out whether a position can be
+     * solved at all, use ExhaustiveSearch instead: it searches depth first in bounded
+     * memory and never holds a whole generation.
      * </p>
      *
      * <p>
@@ -70,6 +105,213 @@ public class PruningSearch {
     }
 
 
+    /**
+     * Sets the number of worker threads used to expand each generation.
+     * The default is 1, which expands on the calling thread. With more
+     * workers the generation is split across a ForkJoinPool that lives for
+     * the duration of <code>search()</code>. The generations, and so the
+     * solutions, are exactly the same as with a single thread.
+     *
+     * @param threads number of worker threads, at least 1.
+     */
+    public void setParallelism(int threads)
+    {
+        if(threads < 1)
+        {
+            throw new RuntimeException("parallelism may not be smaller than 1");
+        }
+        parallelism = threads;
+    }
+
+
+    /**
+     * When a final position is given, children that provably cannot reach it
+     * are dropped before they compete for a place in the next generation. The
+     * proof is a pagoda function: a weighting of the holes whose total over the
+     * pegs never increases when a jump is made, so a position already weighing
+     * less than the target is a dead end. On by default. It has no effect when
+     * no final position was given.
+     *
+     * @param val whether to discard children by pagoda functions.
+     */
+    public void setUsePagodas(boolean val)
+    {
+        usePagodas = val;
+        backwardGenerations = null;
+    }
+
+
+    /**
+     * <p>
+     * Searches from both ends at once. Requires a final position.
+     * </p>
+     *
+     * <p>
+     * A backward search grows from the final position toward the complement of
+     * the initial position: a jump on the complemented board is an unjump on the
+     * real one, so it runs the same move generator. The backward generations are
+     * kept whole, with no pruning, for as long as they stay within the backward
+     * limit. The forward beam then runs as usual, and as soon as one of its
+     * generations has the same number of pegs as a complemented backward
+     * generation, the two are joined on their bitboards. A forward position
+     * found in the backward generation is a solution.
+     * </p>
+     *
+     * <p>
+     * The forward beam only has to get within reach of the backward generations
+     * instead of all the way to the final position, and the backward side never
+     * loses a position to pruning. A bidirectional search therefore solves every
+     * position a forward search with the same pruning number solves, and often
+     * solves with a much smaller pruning number.
+     * </p>
+     *
+     * @param val whether to search from both ends.
+     */
+    public void setBidirectional(boolean val)
+    {
+        bidirectional = val;
+    }
+
+
+    /**
+     * Sets how many positions a backward generation may hold in a bidirectional
+     * search. The backward search stops before the first generation that
+     * would be larger. The default is 65536.
+     *
+     * @param positions largest backward generation kept.
+     */
+    public void setBackwardLimit(int positions)
+    {
+        backwardLimit = positions;
+        backwardGenerations = null;
+    }
+
+
+    /**
+     * <p>
+     * Runs the beam backwards, from the single peg the final position leaves
+     * toward the initial position, undoing one jump per generation. Requires
+     * a final position. The beam is pruned with the same compactness score as
+     * a forward search, taken over the holes instead of the pegs: the backward
+     * search heads for a full board as the forward one heads for an empty one.
+     * Positions the initial position provably cannot reach are discarded by
+     * pagoda functions. Solutions are returned the usual way,
+     * as jumps from the initial position.
+     * </p>
+     *
+     * <p>
+     * The search stops at the generation with as many pegs as the initial
+     * position. When that is a one-hole generation it holds the positions
+     * the beam reached, each a start from which the final position can be
+     * solved. They are available from <code>getStartPositions()</code>. With
+     * a null initial position the search only collects them.
+     * </p>
+     *
+     * @param val whether to search from the final position.
+     */
+    public void setBackward(boolean val)
+    {
+        backward = val;
+    }
+
+
+    /**
+     * <p>
+     * Keeps the beam from collapsing onto near-identical positions. The
+     * plain beam takes the lowest scoring children, and when many of them
+     * come from the same few moves the next generation is a handful of
+     * variations on one position. With a diverse beam the children are
+     * partitioned by the jump that produced them, and every partition is
+     * first given its share of the beam: at least one place, or its part of
+     * half the beam in proportion to its size if that is more, filled with
+     * its lowest scoring children. The places left over go to the lowest
+     * scoring children not yet kept. See selectDiverse.
+     * </p>
+     *
+     * <p>
+     * Off by default. Over every start hole of the boards of PruningSearchTest
+     * it lowers the minimum pruning number on all but the French board:
+     * English 19 to 14 on geometric average, Wiegleb 25 to 23, the 9x9
+     * board 10 to 8.5. It applies to forward, bidirectional and backward
+     * beams alike.
+     * </p>
+     *
+     * @param val whether to keep the beam diverse.
+     */
+    public void setDiverse(boolean val)
+    {
+        diverse = val;
+    }
+
+
+    /**
+     * @return the one-hole positions reached by the last backward search, without history.
+     */
+    public List<Position> getStartPositions()
+    {
+        return startPositions;
+    }
+
+
+    /**
+     * <p>
+     * Reports every generation to the listener once it has been deduplicated
+     * and pruned: its size, how many children were produced, excluded,
+     * duplicated and kept, how the children scored, the time spent on each
+     * step and the bytes allocated. Off by default; without a listener none
+     * of this is measured.
+     * </p>
+     *
+     * <p>
+     * The backward generations of a bidirectional search are reported too,
+     * as are the generations of every search minimumPruningNumber() and
+     * reliablePruningNumber() make.
+     * </p>
+     *
+     * @param listener the listener, or null for none.
+     */
+    public void setListener(SearchListener listener)
+    {
+        this.listener = listener;
+    }
+
+
+    /**
+     * Makes searches give up, without a solution, once System.nanoTime()
+     * passes the deadline. The clock is checked between generations, and
+     * every few hundred positions while a generation is expanded.
+     */
+    void setDeadline(long nanoTime)
+    {
+        hasDeadline = true;
+        deadline = nanoTime;
+    }
+
+
+    /**
+     * @return true if the last search gave up at its deadline.
+     */
+    boolean timedOut()
+    {
+        return timedOut;
+    }
+
+
+    // true once the search has to give up, at its deadline or cancelled
+    private boolean expired()
+    {
+        if(hasDeadline && System.nanoTime() - deadline > 0)
+        {
+            timedOut = true;
+        }
+        if(token != null && token.isCancelled())
+        {
+            cancelled = true;
+        }
+        return timedOut || cancelled;
+    }
+
+
     public List<Move> getSolution(int i)
     {
         if(i < 0) { return null; }
@@ -99,76 +341,1041 @@ public class PruningSearch {
      */
     public int search()
     {
-        List<Position> gen0 = new ArrayList<Position>();
-        gen0.add(initialPosition);
+        reached = null;
+        solutions.clear();
+        timedOut = false;
+        cancelled = false;
+        if(!possiblySolvable())
+        {
+            return 0;
+        }
+
+        begin();
+        try
+        {
+            run();
+        }
+        finally
+        {
+            end();
+        }
 
-        searchByGeneration(gen0);
         return solutions.size();
     }
 
 
-    void searchByGeneration(List<Position> currentGen)
+    /**
+     * <p>
+     * Searches as <code>search()</code> does, but lazily: the solutions come
+     * one at a time, as soon as the beam finds them, in the order
+     * <code>search()</code> would list them. Nothing is searched until the
+     * first solution is asked for, and the search stops at the last one
+     * asked for, even in the middle of a generation. So
+     * <code>solutions().findFirst()</code> does not expand the rest of the
+     * final generation, and <code>solutions().limit(k)</code> stops at the
+     * k-th solution.
+     * </p>
+     *
+     * <p>
+     * The solutions returned are also available from
+     * <code>getSolution()</code> and <code>getFinalPosition()</code>, in the
+     * order they were returned. The search runs on the thread that consumes
+     * the stream, without worker threads or a listener, and ends early if
+     * the deadline passes. Backward and bidirectional searches are not
+     * lazy: they run whole when this is called.
+     * </p>
+     *
+     * @return the solutions, as final positions.
+     */
+    public Stream<Position> solutions()
     {
-        if(currentGen.size() == 0)
+        solutions.clear();
+        timedOut = false;
+        cancelled = false;
+
+        Iterator<Position> found;
+        if(!possiblySolvable())
         {
-            return;
+            found = solutions.iterator();
+        }
+        else if(backward || bidirectional)
+        {
+            search();
+            found = new ArrayList<Position>(solutions).iterator();
+        }
+        else
+        {
+            pagodas = pagodas();
+            found = new Solutions();
         }
 
-        // Is TreeSet or a HashSet faster?
-        // I ran a performance test where I tried to solve
-        // the English board with the pruning number
-        // set to 10_000.
-        // TreeSet took 25 sec.
-        // HashSet took 25 sec.
-        // I think it is highly unlikely that the two libraries
-        // have literally identical performance.
-        // I think most likely this result means that
-        // this part of the code is not a bottle neck.
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(found, Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
 
-        Set<String> dedup = new TreeSet<String>();
-        List<Position> children = new ArrayList<Position>();
 
-        for(Position b : currentGen) {
-            for(Position child : b.children()) {
-                if(useSymmetry)
-                {
-                    if(!dedup.contains(child.symmID()))
-                    {
-                        dedup.add(child.symmID());
-                        children.add(child);
-                    }
-                }
-                else
-                {
-                    if (!dedup.contains(child.id()))
-                    {
-                        dedup.add(child.id());
-                        children.add(child);
-                    }
-                }
+    /**
+     * Searches as <code>search()</code> does, but gives up once the time
+     * limit has passed. The limit is checked between generations, and every
+     * few hundred positions while a generation is expanded, so the search
+     * returns soon after it, even on a large board with a large pruning
+     * number.
+     *
+     * @param timeLimit how long the search may take.
+     * @param unit the unit of the time limit.
+     * @return whether the search found a solution, found none, or ran out of
+     * time, and the furthest position it reached.
+     */
+    public SearchResult search(long timeLimit, TimeUnit unit)
+    {
+        // far enough ahead that the clock cannot wrap around to it
+        long nanos = Math.min(unit.toNanos(timeLimit), Long.MAX_VALUE / 4);
+        return bounded(System.nanoTime() + nanos, null);
+    }
+
+
+    /**
+     * Searches as <code>search()</code> does, but gives up soon after the
+     * token is cancelled, from any thread. The token is checked as often as
+     * a time limit is.
+     *
+     * @param token the token that stops the search.
+     * @return whether the search found a solution, found none, or was
+     * cancelled, and the furthest position it reached.
+     */
+    public SearchResult search(CancellationToken token)
+    {
+        return bounded(0, token);
+    }
+
+
+    private SearchResult bounded(long deadline, CancellationToken token)
+    {
+        boolean hadDeadline = hasDeadline;
+        long previousDeadline = this.deadline;
+        hasDeadline = token == null;
+        this.deadline = deadline;
+        this.token = token;
+
+        int found;
+        try
+        {
+            found = search();
+        }
+        finally
+        {
+            hasDeadline = hadDeadline;
+            this.deadline = previousDeadline;
+            this.token = null;
+        }
+
+        SearchResult.Status status = SearchResult.Status.NO_SOLUTION;
+        if(found > 0)
+        {
+            status = SearchResult.Status.SOLVED;
+        }
+        else if(cancelled)
+        {
+            status = SearchResult.Status.CANCELLED;
+        }
+        else if(timedOut)
+        {
+            status = SearchResult.Status.TIMED_OUT;
+        }
+        return new SearchResult(status, found, deepest());
+    }
+
+
+    // the best scoring position of the last generation completed
+    private Position deepest()
+    {
+        if(reached == null || reached.isEmpty())
+        {
+            return null;
+        }
+
+        Position best = reached.get(0);
+        for(Position p : reached)
+        {
+            if(reachedBackward ? p.complementScore() < best.complementScore() : p.score() < best.score())
+            {
+                best = p;
             }
         }
+        return best;
+    }
+
+
+    /**
+     * <p>
+     * Finds the smallest pruning number that solves the initial position,
+     * which is how the difficulty of a board is measured. It tries 1, 2,
+     * 3, ... in turn. So that a position no pruning number up to the limit
+     * solves does not cost a search for every one of them, the limit itself
+     * is tried first.
+     * </p>
+     *
+     * <p>
+     * The searches share their work. Until a generation has to be pruned,
+     * the generations are the same for every pruning number at least as
+     * large as every generation so far, so they are kept and each search
+     * starts from the deepest generation it has in common with the earlier
+     * ones. A search that fails without pruning anything proves that no
+     * larger pruning number solves the position, and ends the hunt.
+     * Afterwards the pruning number is set to the result and the solutions
+     * of that search are available as usual.
+     * </p>
+     *
+     * <p>
+     * A search that runs out of time ends the hunt. If the limit solved,
+     * it is returned, but it is only an upper bound on the minimum.
+     * </p>
+     *
+     * @param limit largest pruning number to try.
+     * @return the pruning number, or -1 if no pruning number up to the limit solves.
+     */
+    public int minimumPruningNumber(int limit)
+    {
+        return hunt(limit, false);
+    }
+
+
+    /**
+     * <p>
+     * Finds a pruning number from which the beam solves the initial position
+     * reliably. A larger beam does not always do at least as well as a
+     * smaller one. Below the point from which every pruning number solves
+     * there are usually a few isolated numbers that solve by luck; English
+     * from the centre solves at 45, then not again until 121.
+     * </p>
+     *
+     * <p>
+     * Rather than trying every number in turn, it doubles the pruning number
+     * until a search succeeds and then bisects between the last failure and
+     * that success. It settles on a number that solves while the number
+     * below it does not, nearly always the start of the solid range, and
+     * takes a few searches where minimumPruningNumber() may take hundreds.
+     * The searches share their work the same way, and afterwards the pruning
+     * number is set to the result and the solutions of that search are
+     * available as usual.
+     * </p>
+     *
+     * <p>
+     * A search that runs out of time ends the hunt. If an earlier search
+     * solved, the smallest pruning number that did is returned.
+     * </p>
+     *
+     * @param limit largest pruning number to try.
+     * @return the pruning number, or -1 if no pruning number up to the limit solves.
+     */
+    public int reliablePruningNumber(int limit)
+    {
+        return hunt(limit, true);
+    }
+
+
+    private int hunt(int limit, boolean bisect)
+    {
+        timedOut = false;
+        cancelled = false;
+        solutions.clear();
+        if(!possiblySolvable())
+        {
+            return -1;
+        }
+
+        List<Position> found = new ArrayList<Position>();
+        int solved;
+
+        begin();
+        try
+        {
+            exact = new ArrayList<List<Position>>();
+            exactLargest = new ArrayList<Integer>();
+            solved = bisect ? bisect(limit, found) : scan(limit, found);
+        }
+        finally
+        {
+            exact = null;
+            exactLargest = null;
+            end();
+        }
+
+        solutions.clear();
+        if(solved >= 0)
+        {
+            solutions.addAll(found);
+            pruningNumber = solved;
+        }
+        return solved;
+    }
+
+
+    // Tries the limit, then every pruning number from 1 up.
+    private int scan(int limit, List<Position> found)
+    {
+        if(limit < 1 || !solves(limit))
+        {
+            return -1;
+        }
+        found.addAll(solutions);
 
-        for(Position b : children) {
-            if(b.isFinal() && (finalPosition == null || b.isComplement(finalPosition))) {
-                solutions.add(b);
+        for(int d = 1; d < limit && !timedOut && !cancelled; d++)
+        {
+            if(solves(d))
+            {
+                found.clear();
+                found.addAll(solutions);
+                return d;
+            }
+            if(!pruned)
+            {
+                break;
             }
         }
+        return limit;
+    }
+
 
-        if(solutions.size() > 0)
+    // Doubles the pruning number until it solves, then bisects.
+    private int bisect(int limit, List<Position> found)
+    {
+        int failed = 0;
+        int solved = -1;
+
+        int d = Math.min(1, limit);
+        while(solved < 0 && d > failed)
         {
-            return;
+            if(solves(d))
+            {
+                solved = d;
+                found.addAll(solutions);
+            }
+            else if(!pruned || timedOut || cancelled)
+            {
+                break;
+            }
+            else
+            {
+                failed = d;
+                d = (int) Math.min(2L*d, limit);
+            }
         }
 
-        if(pruningNumber > 0 && children.size() > pruningNumber) {
-            Collections.sort(children, new PositionComparator());
-            List<Position> children2 = new ArrayList<Position>();
-            for(int i = 0; i < pruningNumber; i++) {
-                children2.add(children.get(i));
+        while(solved - failed > 1 && !timedOut && !cancelled)
+        {
+            int mid = (failed + solved) >>> 1;
+            if(solves(mid))
+            {
+                solved = mid;
+                found.clear();
+                found.addAll(solutions);
+            }
+            else
+            {
+                failed = mid;
             }
-            children = children2;
         }
+        return solved;
+    }
+
+
+    private boolean solves(int d)
+    {
+        pruningNumber = d;
+        solutions.clear();
+        run();
+        return solutions.size() > 0;
+    }
+
+
+    private boolean possiblySolvable()
+    {
+        return finalPosition == null || initialPosition == null
+            || finalPosition.board().possiblySolvable(initialPosition, finalPosition);
+    }
+
+
+    private void begin()
+    {
+        if(parallelism > 1)
+        {
+            expander = new ParallelExpander(parallelism, this::expired);
+        }
+
+        pagodas = pagodas();
+    }
+
 
-        searchByGeneration(children);
+    private Pagoda[] pagodas()
+    {
+        if(usePagodas && finalPosition != null)
+        {
+            Board board = finalPosition.board();
+            return board.pagodas(board.holesLo & ~finalPosition.lo(), board.holesHi & ~finalPosition.hi());
+        }
+        return new Pagoda[0];
+    }
+
+
+    private void run()
+    {
+        pruned = false;
+        if(backward)
+        {
+            searchBackward();
+        }
+        else if(bidirectional)
+        {
+            searchBidirectional();
+        }
+        else
+        {
+            List<Position> gen0 = new ArrayList<Position>();
+            gen0.add(initialPosition);
+            searchByGeneration(gen0);
+        }
+    }
+
+
+    private void end()
+    {
+        if(expander != null)
+        {
+            expander.shutdown();
+            expander = null;
+        }
+    }
+
+
+    /**
+     * Returns the <code>count</code> lowest scoring positions, in the order a
+     * stable sort on score would put them, so ties are broken by position in
+     * the list. Scores are small integers (at most 4 per hole), which lets this
+     * be a counting sort that only places the survivors: linear in the size of
+     * the generation instead of n log n for sorting all of it.
+     */
+    static List<Position> selectBest(List<Position> positions, int count)
+    {
+        return selectBest(positions, count, false);
+    }
+
+
+    // Ranked by complementScore() when the search runs backward.
+    static List<Position> selectBest(List<Position> positions, int count, boolean backward)
+    {
+        if(positions.size() <= count)
+        {
+            return positions;
+        }
+
+        int[] start = new int[4*positions.get(0).board().holeCount + 2];
+        for(Position p : positions)
+        {
+            start[(backward ? p.complementScore() : p.score()) + 1]++;
+        }
+
+        // start[s] becomes the number of positions scoring below s
+        int cutoff = 0;
+        while(start[cutoff] + start[cutoff + 1] < count)
+        {
+            start[cutoff + 1] += start[cutoff];
+            cutoff++;
+        }
+        int ties = count - start[cutoff];
+
+        Position[] best = new Position[count];
+        for(Position p : positions)
+        {
+            int score = backward ? p.complementScore() : p.score();
+            if(score < cutoff || (score == cutoff && ties-- > 0))
+            {
+                best[start[score]++] = p;
+            }
+        }
+
+        return Arrays.asList(best);
+    }
+
+
+    /**
+     * Same as selectBest, but partitioned by the jump that produced each
+     * position. In score order, ties by position in the list, every
+     * partition first takes up to its share of places: count / 2 split in
+     * proportion to the sizes of the partitions, rounded down, but at least
+     * one. The places left, if any, go to the lowest scoring positions not
+     * yet taken. The positions kept are returned in score order. The
+     * partition of a position is an index into the Board's jump table, so
+     * this stays a pair of linear passes over the generation.
+     */
+    static List<Position> selectDiverse(List<Position> positions, int count, boolean backward)
+    {
+        if(positions.size() <= count)
+        {
+            return positions;
+        }
+
+        Board board = positions.get(0).board();
+        int n = positions.size();
+        int[] score = new int[n];
+        int[] start = new int[4*board.holeCount + 2];
+        int[] share = new int[board.jumpCount + 1]; // partition 0 holds positions without history
+        for(int i = 0; i < n; i++)
+        {
+            Position p = positions.get(i);
+            score[i] = backward ? p.complementScore() : p.score();
+            start[score[i] + 1]++;
+            share[p.jump() + 1]++;
+        }
+
+        for(int k = 0; k < share.length; k++)
+        {
+            share[k] = share[k] == 0 ? 0 : (int) Math.max(1L, (long) (count / 2)*share[k] / n);
+        }
+
+        // stable counting sort of the indices by score
+        for(int s = 1; s < start.length; s++)
+        {
+            start[s] += start[s - 1];
+        }
+        int[] order = new int[n];
+        for(int i = 0; i < n; i++)
+        {
+            order[start[score[i]]++] = i;
+        }
+
+        boolean[] kept = new boolean[n];
+        int left = count;
+        for(int r = 0; r < n && left > 0; r++)
+        {
+            int k = positions.get(order[r]).jump() + 1;
+            if(share[k] > 0)
+            {
+                share[k]--;
+                kept[order[r]] = true;
+                left--;
+            }
+        }
+        for(int r = 0; r < n && left > 0; r++)
+        {
+            if(!kept[order[r]])
+            {
+                kept[order[r]] = true;
+                left--;
+            }
+        }
+
+        List<Position> best = new ArrayList<Position>(count);
+        for(int r = 0; r < n; r++)
+        {
+            if(kept[order[r]])
+            {
+                best.add(positions.get(order[r]));
+            }
+        }
+        return best;
+    }
+
+
+    void searchByGeneration(List<Position> currentGen)
+    {
+        // resume from the deepest generation that this pruning number would
+        // have left whole
+        boolean keep = exact != null;
+        if(keep)
+        {
+            if(exact.isEmpty())
+            {
+                exact.add(currentGen);
+                exactLargest.add(currentGen.size());
+            }
+
+            int depth = 0;
+            while(depth + 1 < exact.size() && exactLargest.get(depth + 1) <= pruningNumber)
+            {
+                depth++;
+            }
+            currentGen = exact.get(depth);
+            keep = depth + 1 == exact.size();
+        }
+
+        while(currentGen.size() > 0 && !expired())
+        {
+            List<Position> children = expand(currentGen, false, useSymmetry, pagodas);
+
+            for(Position b : children) {
+                if(b.isFinal() && (finalPosition == null || b.isComplement(finalPosition))) {
+                    solutions.add(b);
+                }
+            }
+
+            if(solutions.size() > 0)
+            {
+                report(children);
+                return;
+            }
+
+            if(pruningNumber > 0 && children.size() > pruningNumber) {
+                children = keepBest(children, false);
+                keep = false;
+            }
+            else if(keep)
+            {
+                exact.add(children);
+                exactLargest.add(Math.max(children.size(), exactLargest.get(exactLargest.size() - 1)));
+            }
+
+            report(children);
+            reach(children, false);
+            currentGen = children;
+        }
+    }
+
+
+    private void searchBidirectional()
+    {
+        if(finalPosition == null)
+        {
+            throw new RuntimeException("bidirectional search requires a final position");
+        }
+
+        Board board = initialPosition.board();
+        int jumps = initialPosition.pegCount() - (board.holeCount - finalPosition.pegCount());
+        if(jumps < 0)
+        {
+            return;
+        }
+
+        if(backwardGenerations == null)
+        {
+            List<List<Position>> generations = backwardGenerations(jumps);
+            if(timedOut || cancelled)
+            {
+                return; // cut short, not worth keeping
+            }
+            backwardGenerations = generations;
+        }
+        List<List<Position>> backward = backwardGenerations;
+
+        List<Position> currentGen = new ArrayList<Position>();
+        currentGen.add(initialPosition);
+        for(int k = 0; k <= jumps && currentGen.size() > 0 && !expired(); k++)
+        {
+            if(jumps - k < backward.size())
+            {
+                join(currentGen, backward.get(jumps - k));
+                if(solutions.size() > 0)
+                {
+                    return;
+                }
+            }
+
+            currentGen = expand(currentGen, false, useSymmetry, pagodas);
+            if(pruningNumber > 0 && currentGen.size() > pruningNumber) {
+                currentGen = keepBest(currentGen, false);
+            }
+            report(currentGen);
+            reach(currentGen, false);
+        }
+    }
+
+
+    private void searchBackward()
+    {
+        if(finalPosition == null)
+        {
+            throw new RuntimeException("backward search requires a final position");
+        }
+
+        Board board = finalPosition.board();
+        Pagoda[] backwardPagodas = new Pagoda[0];
+        if(usePagodas && initialPosition != null)
+        {
+            backwardPagodas = board.backwardPagodas(initialPosition.lo(), initialPosition.hi());
+        }
+
+        // the generations gain a peg each, up to that of the initial position
+        int startPegs = initialPosition == null ? board.holeCount - 1 : initialPosition.pegCount();
+
+        startPositions.clear();
+        List<Position> currentGen = new ArrayList<Position>();
+        currentGen.add(finalPosition.complement());
+        while(currentGen.size() > 0 && currentGen.get(0).pegCount() < startPegs && !expired())
+        {
+            List<Position> predecessors = expand(currentGen, true, useSymmetry, backwardPagodas);
+
+            for(Position b : predecessors) {
+                if(b.pegCount() == board.holeCount - 1) {
+                    startPositions.add(b.copy());
+                }
+                if(initialPosition != null && b.lo() == initialPosition.lo() && b.hi() == initialPosition.hi()) {
+                    solutions.add(replay(b));
+                }
+            }
+
+            if(solutions.size() > 0)
+            {
+                report(predecessors);
+                return;
+            }
+
+            if(pruningNumber > 0 && predecessors.size() > pruningNumber) {
+                predecessors = keepBest(predecessors, true);
+            }
+            report(predecessors);
+            reach(predecessors, true);
+
+            currentGen = predecessors;
+        }
+    }
+
+
+    // The jumps undone on the way back from the final position, made forward
+    // from the initial position.
+    private Position replay(Position start)
+    {
+        int[] jumps = start.getJumps();
+        Position p = initialPosition;
+        for(int j = jumps.length - 1; j >= 0; j--)
+        {
+            p = p.beget(jumps[j]);
+        }
+        return p;
+    }
+
+
+    /**
+     * The backward generations are complete: no pruning and no symmetry, so
+     * that the join can only miss a solution the forward beam missed. They do
+     * not depend on the pruning number and are kept for later searches.
+     */
+    private List<List<Position>> backwardGenerations(int jumps)
+    {
+        Board board = initialPosition.board();
+        Pagoda[] backwardPagodas = new Pagoda[0];
+        if(usePagodas)
+        {
+            backwardPagodas = board.pagodas(board.holesLo & ~initialPosition.lo(), board.holesHi & ~initialPosition.hi());
+        }
+
+        List<List<Position>> generations = new ArrayList<List<Position>>();
+        List<Position> currentGen = new ArrayList<Position>();
+        currentGen.add(finalPosition);
+        while(currentGen.size() > 0 && generations.size() <= jumps && !expired())
+        {
+            generations.add(currentGen);
+            currentGen = expand(currentGen, false, false, backwardPagodas);
+            report(currentGen);
+            if(currentGen.size() > backwardLimit)
+            {
+                break;
+            }
+        }
+
+        return generations;
+    }
+
+
+    /**
+     * Adds a solution for every forward position that is the complement of a
+     * backward position. A jump on the complemented board is the same jump on
+     * the real one, so the backward jumps, replayed in reverse order, take the
+     * forward position to the complement of the final position.
+     */
+    private void join(List<Position> forward, List<Position> backward)
+    {
+        Board board = initialPosition.board();
+        PositionIndex index = new PositionIndex(backward.size());
+        for(Position b : backward)
+        {
+            index.add(board.holesLo ^ b.lo(), board.holesHi ^ b.hi());
+        }
+
+        for(Position f : forward)
+        {
+            int i = index.get(f.lo(), f.hi());
+            if(i >= 0)
+            {
+                int[] jumps = backward.get(i).getJumps();
+                Position p = f;
+                for(int j = jumps.length - 1; j >= 0; j--)
+                {
+                    p = p.beget(jumps[j]);
+                }
+                solutions.add(p);
+            }
+        }
+    }
+
+
+    // The pruningNumber best of the generation.
+    private List<Position> keepBest(List<Position> positions, boolean backward)
+    {
+        pruned = true;
+        if(stats == null)
+        {
+            return select(positions, backward);
+        }
+
+        long start = System.nanoTime();
+        List<Position> best = select(positions, backward);
+        stats.sortNanos = System.nanoTime() - start;
+        return best;
+    }
+
+
+    private List<Position> select(List<Position> positions, boolean backward)
+    {
+        return diverse
+            ? selectDiverse(positions, pruningNumber, backward)
+            : selectBest(positions, pruningNumber, backward);
+    }
+
+
+    // Remembers the generation as the furthest the search got, unless it
+    // was cut short.
+    private void reach(List<Position> generation, boolean backward)
+    {
+        if(!generation.isEmpty())
+        {
+            reached = generation;
+            reachedBackward = backward;
+        }
+    }
+
+
+    // Hands the generation just expanded to the listener.
+    private void report(List<Position> next)
+    {
+        if(stats != null)
+        {
+            stats.finish(next);
+            GenerationStats finished = stats;
+            stats = null;
+            listener.generation(finished);
+        }
+    }
+
+
+    // All children of the generation that can still reach the final position,
+    // without duplicates, in generation order. Backward, all predecessors that
+    // can still be reached from the initial position.
+    private List<Position> expand(List<Position> currentGen, boolean backward, boolean useSymmetry, Pagoda[] pagodas)
+    {
+        if(listener != null)
+        {
+            Position first = currentGen.get(0);
+            stats = new GenerationStats(first.board(), backward, pruningNumber, first.pegCount(), currentGen.size());
+            List<Position> children = expander != null
+                ? expander.expand(currentGen, backward, useSymmetry, pagodas, stats)
+                : expandMeasured(currentGen, backward, useSymmetry, pagodas);
+            stats.children = children.size();
+            stats.unpruned = children;
+            return children;
+        }
+
+        if(expander != null)
+        {
+            return expander.expand(currentGen, backward, useSymmetry, pagodas);
+        }
+
+        // Children are deduplicated on their packed bitboards. The old
+        // TreeSet<String> and HashSet<String> versions timed the same
+        // because building an X*Y character id for every child cost far
+        // more than either set; see PositionSetTest for the comparison
+        // and PositionBenchmark for the current numbers.
+
+        dedup.clear();
+        List<Position> children = new ArrayList<Position>();
+        int expanded = 0;
+
+        for(Position b : currentGen) {
+            if((++expanded & 255) == 0 && expired())
+            {
+                return new ArrayList<Position>(); // cut short
+            }
+
+            for(Position child : backward ? b.predecessors() : b.children()) {
+                if(Pagoda.excludes(pagodas, child))
+                {
+                    continue;
+                }
+
+                if(useSymmetry)
+                {
+                    child.canonical(key);
+                }
+                else
+                {
+                    key[0] = child.lo();
+                    key[1] = child.hi();
+                }
+
+                if(dedup.add(key[0], key[1]))
+                {
+                    children.add(child);
+                }
+            }
+        }
+
+        return children;
+    }
+
+
+    // expand(), in two timed passes: producing and filtering the children,
+    // then removing the duplicates.
+    private List<Position> expandMeasured(List<Position> currentGen, boolean backward, boolean useSymmetry, Pagoda[] pagodas)
+    {
+        long start = System.nanoTime();
+        List<Position> all = new ArrayList<Position>();
+        int parents = 0;
+        for(Position b : currentGen) {
+            if((++parents & 255) == 0 && expired())
+            {
+                return new ArrayList<Position>(); // cut short
+            }
+
+            for(Position child : backward ? b.predecessors() : b.children()) {
+                stats.produced++;
+                if(Pagoda.excludes(pagodas, child))
+                {
+                    stats.excluded++;
+                }
+                else
+                {
+                    all.add(child);
+                }
+            }
+        }
+        long expanded = System.nanoTime();
+
+        dedup.clear();
+        List<Position> children = new ArrayList<Position>();
+        for(Position child : all) {
+            if(useSymmetry)
+            {
+                child.canonical(key);
+            }
+            else
+            {
+                key[0] = child.lo();
+                key[1] = child.hi();
+            }
+
+            if(dedup.add(key[0], key[1]))
+            {
+                children.add(child);
+            }
+        }
+
+        stats.expandNanos = expanded - start;
+        stats.dedupNanos = System.nanoTime() - expanded;
+        return children;
+    }
+
+
+    /**
+     * The forward search of searchByGeneration(), one parent at a time.
+     * Every solution is added to the solutions list as it is found and
+     * handed out from there.
+     */
+    private final class Solutions implements Iterator<Position>
+    {
+        private List<Position> currentGen = new ArrayList<Position>();
+        private List<Position> children = new ArrayList<Position>();
+        private int parent = 0;   // next parent of currentGen to expand
+        private int returned = 0; // solutions handed out so far
+        private boolean done = false;
+
+
+        Solutions()
+        {
+            currentGen.add(initialPosition);
+            dedup.clear();
+        }
+
+
+        @Override
+        public boolean hasNext()
+        {
+            while(returned == solutions.size() && !done)
+            {
+                step();
+            }
+            return returned < solutions.size();
+        }
+
+
+        @Override
+        public Position next()
+        {
+            if(!hasNext())
+            {
+                throw new NoSuchElementException();
+            }
+            return solutions.get(returned++);
+        }
+
+
+        // expands the next parent, or moves on to the next generation
+        private void step()
+        {
+            if(parent == currentGen.size())
+            {
+                nextGeneration();
+                return;
+            }
+
+            if((parent & 255) == 255 && expired())
+            {
+                done = true;
+                return;
+            }
+
+            for(Position child : currentGen.get(parent++).children()) {
+                if(Pagoda.excludes(pagodas, child))
+                {
+                    continue;
+                }
+
+                if(useSymmetry)
+                {
+                    child.canonical(key);
+                }
+                else
+                {
+                    key[0] = child.lo();
+                    key[1] = child.hi();
+                }
+
+                if(dedup.add(key[0], key[1]))
+                {
+                    children.add(child);
+                    if(child.isFinal() && (finalPosition == null || child.isComplement(finalPosition))) {
+                        solutions.add(child);
+                    }
+                }
+            }
+        }
+
+
+        private void nextGeneration()
+        {
+            // the generation that holds a solution is the last one
+            if(solutions.size() > 0 || children.isEmpty() || expired())
+            {
+                done = true;
+                return;
+            }
+
+            if(pruningNumber > 0 && children.size() > pruningNumber) {
+                children = select(children, false);
+                pruned = true;
+            }
+
+            currentGen = children;
+            children = new ArrayList<Position>();
+            parent = 0;
+            dedup.clear();
+        }
     }
 }
@@ -0,0 +1,11 @@
+package org.khrapov.pegsolitaire.solver;
+
+/**
+ * Receives a report on every generation a PruningSearch expands, once the
+ * generation has been deduplicated and pruned. It is called on the thread
+ * that runs the search. See PruningSearch.setListener.
+ */
+public interface SearchListener
+{
+    void generation(GenerationStats stats);
+}
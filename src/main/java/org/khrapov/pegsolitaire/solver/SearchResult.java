@@ -0,0 +1,89 @@
+package org.khrapov.pegsolitaire.solver;
+
+import java.util.List;
+
+/**
+ * The outcome of a PruningSearch that was given a time limit or a
+ * cancellation token: whether it found a solution, found none, or gave up,
+ * and how far it got.
+ */
+public class SearchResult
+{
+    public enum Status
+    {
+        SOLVED,
+        NO_SOLUTION,
+        TIMED_OUT,
+        CANCELLED
+    }
+
+
+    private final Status status;
+    private final int solutionCount;
+    private final Position deepest;
+
+
+    SearchResult(Status status, int solutionCount, Position deepest)
+    {
+        this.status = status;
+        this.solutionCount = solutionCount;
+        this.deepest = deepest;
+    }
+
+
+    public Status getStatus()
+    {
+        return status;
+    }
+
+
+    public boolean isSolved()
+    {
+        return status == Status.SOLVED;
+    }
+
+
+    /**
+     * @return true if the search stopped, at its time limit or because it was
+     * cancelled, before it could tell whether there is a solution.
+     */
+    public boolean hasGivenUp()
+    {
+        return status == Status.TIMED_OUT || status == Status.CANCELLED;
+    }
+
+
+    /**
+     * @return number of solutions found. The solutions themselves are
+     * available from the search, as after <code>search()</code>.
+     */
+    public int getSolutionCount()
+    {
+        return solutionCount;
+    }
+
+
+    /**
+     * The best scoring position of the last generation the search completed,
+     * the furthest it got. In a backward search it is a position from which
+     * the final position can be reached, and its moves are the jumps undone,
+     * latest first.
+     *
+     * @return the position, or null if not even one generation was completed.
+     */
+    public Position getDeepestPosition()
+    {
+        return deepest;
+    }
+
+
+    /**
+     * @return the moves that lead to the deepest position, or null if there is none.
+     */
+    public List<Move> getDeepestMoves()
+    {
+        if(deepest == null) { return null; }
+
+        return deepest.getHistory();
+    }
+}
@@ -0,0 +1,345 @@
+package org.khrapov.pegsolitaire.solver;
+
+import java.util.Arrays;
+
+/**
+ * Class SolvabilityMatrix finds, for every start hole of a board, the holes
+ * in which the last peg can end, in one search for all of them instead of
+ * one search per pair.
+ *
+ * <p>
+ * The search is breadth first, from every start hole at once. Each position
+ * of a generation carries a label: the set of start holes it was reached
+ * from, kept as a bitboard over the holes of the board. A position reached
+ * from several start holes is stored and expanded once, under the union of
+ * their labels. Positions are stored in canonical form under the symmetries
+ * of the board, and the label is carried by the same symmetry as the
+ * position, so start holes that are images of each other share a single
+ * position from the first generation on. When the single pegs are reached,
+ * every symmetry of a single peg and its label gives a set of start holes
+ * and the end hole they lead to.
+ * </p>
+ *
+ * <p>
+ * Start holes whose position class no single peg has can lead nowhere and
+ * are not searched; see Board.possiblySolvable. With the default pruning
+ * number of 0 (zero) nothing else is dropped and the matrix is exact. With
+ * a pruning number each generation is cut to that many lowest scoring
+ * positions, as in PruningSearch; an entry of the matrix is then only set
+ * if the beam found it, and every entry set is a solvable pair. The beam is
+ * shared by all start holes, so it needs to be wider than a PruningSearch
+ * beam for one of them, though far less than once per start hole.
+ * </p>
+ *
+ * <pre>
+ * {@code
+ * Board b = new Board(7, 7, englishBoard);
+ * SolvabilityMatrix matrix = new SolvabilityMatrix(b);
+ * matrix.prune(5000);
+ * matrix.solve();
+ * boolean centre = matrix.isSolvable(3, 3, 3, 3);
+ * }
+ * </pre>
+ */
+public class SolvabilityMatrix
+{
+    private final Board board;
+    private int pruningNumber = 0;
+    private boolean useSymmetry = true;
+
+    private int symmetries;
+    private long[] endsLo; // per start hole, the end holes found
+    private long[] endsHi;
+    private int startClasses;
+    private final long[] key = new long[2];
+    private final long[] image = new long[2];
+
+
+    public SolvabilityMatrix(Board board)
+    {
+        this.board = board;
+    }
+
+
+    /**
+     * Sets how many positions each generation may keep. The default, 0
+     * (zero), keeps them all and makes the matrix exact.
+     *
+     * @param prune the pruning number.
+     */
+    public void prune(int prune)
+    {
+        pruningNumber = prune;
+    }
+
+
+    /**
+     * Stores positions that are mirror images or rotations of each other
+     * once. On by default. The matrix is the same either way, when exact.
+     *
+     * @param val whether to use the board's symmetries.
+     */
+    public void setUseSymmetry(boolean val)
+    {
+        useSymmetry = val;
+    }
+
+
+    /**
+     * Fills in the matrix.
+     */
+    public void solve()
+    {
+        symmetries = useSymmetry ? board.allSymmetries() : 0;
+        endsLo = new long[board.holeCount];
+        endsHi = new long[board.holeCount];
+
+        int endClasses = 0;
+        for(int i = 0; i < board.holeCount; i++)
+        {
+            endClasses |= 1 << board.positionClass(Board.lo(i), Board.hi(i));
+        }
+
+        Generation generation = new Generation(board.holeCount);
+        for(int i = 0; i < board.holeCount; i++)
+        {
+            long lo = board.holesLo & ~Board.lo(i);
+            long hi = board.holesHi & ~Board.hi(i);
+            if((endClasses & (1 << board.positionClass(lo, hi))) != 0)
+            {
+                add(generation, lo, hi, Board.lo(i), Board.hi(i), 0);
+            }
+        }
+        generation = generation.merged();
+        startClasses = generation.size;
+
+        int pegs = board.holeCount - 1;
+        while(pegs > 1 && generation.size > 0)
+        {
+            generation = expand(generation);
+            pegs--;
+
+            if(pruningNumber > 0 && generation.size > pruningNumber)
+            {
+                generation = generation.best(pruningNumber);
+            }
+        }
+
+        if(pegs == 1)
+        {
+            record(generation);
+        }
+    }
+
+
+    /**
+     * @return true if a peg can be left alone in the end hole, starting
+     * with only the start hole empty. This is the pair a PruningSearch from
+     * <code>initialPosition(startX, startY)</code> to
+     * <code>initialPosition(endX, endY)</code> solves.
+     */
+    public boolean isSolvable(int startX, int startY, int endX, int endY)
+    {
+        int start = board.hole(startX, startY);
+        int end = board.hole(endX, endY);
+        if(start < 0 || end < 0)
+        {
+            return false;
+        }
+
+        return ((endsLo[start] & Board.lo(end)) | (endsHi[start] & Board.hi(end))) != 0L;
+    }
+
+
+    /**
+     * @return a position with a peg in each hole the last peg can end in,
+     * starting with only the given hole empty.
+     */
+    public Position getEnds(int startX, int startY)
+    {
+        int start = board.hole(startX, startY);
+        if(start < 0)
+        {
+            return new Position(board, 0L, 0L);
+        }
+
+        return new Position(board, endsLo[start], endsHi[start]);
+    }
+
+
+    /**
+     * @return the number of start holes searched, counting start holes that
+     * are images of each other once.
+     */
+    public int getStartClasses()
+    {
+        return startClasses;
+    }
+
+
+    // All children of the generation, with their labels, without duplicates.
+    private Generation expand(Generation generation)
+    {
+        Generation children = new Generation(4*generation.size);
+        for(int i = 0; i < generation.size; i++)
+        {
+            Position parent = new Position(board, generation.keys[2*i], generation.keys[2*i + 1]);
+            for(Position child : parent.children())
+            {
+                add(children, child.lo(), child.hi(), generation.labels[2*i], generation.labels[2*i + 1], child.score());
+            }
+        }
+        return children.merged();
+    }
+
+
+    // Adds the canonical form of the position, and carries its label along.
+    private void add(Generation generation, long lo, long hi, long labelLo, long labelHi, int score)
+    {
+        int sym = board.canonical(lo, hi, key, symmetries);
+        if(sym >= 0)
+        {
+            board.image(sym, labelLo, labelHi, image);
+            labelLo = image[0];
+            labelHi = image[1];
+        }
+        generation.add(key[0], key[1], labelLo, labelHi, score);
+    }
+
+
+    // Every image of every single peg gives an end hole and its start holes.
+    private void record(Generation generation)
+    {
+        for(int i = 0; i < generation.size; i++)
+        {
+            for(int sym = -1; sym < board.symmetryCount; sym++)
+            {
+                if(sym >= 0 && (symmetries & (1 << sym)) == 0)
+                {
+                    continue;
+                }
+
+                long endLo = generation.keys[2*i];
+                long endHi = generation.keys[2*i + 1];
+                long startLo = generation.labels[2*i];
+                long startHi = generation.labels[2*i + 1];
+                if(sym >= 0)
+                {
+                    board.image(sym, endLo, endHi, image);
+                    endLo = image[0];
+                    endHi = image[1];
+                    board.image(sym, startLo, startHi, image);
+                    startLo = image[0];
+                    startHi = image[1];
+                }
+
+                for(int s = 0; s < board.holeCount; s++)
+                {
+                    if(((startLo & Board.lo(s)) | (startHi & Board.hi(s))) != 0L)
+                    {
+                        endsLo[s] |= endLo;
+                        endsHi[s] |= endHi;
+                    }
+                }
+            }
+        }
+    }
+
+
+    /**
+     * A generation of labelled positions, packed: keys and labels as (lo, hi)
+     * pairs, and the compactness score of each position.
+     */
+    private static final class Generation
+    {
+        private long[] keys;
+        private long[] labels;
+        private int[] scores;
+        private int size = 0;
+
+
+        Generation(int capacity)
+        {
+            capacity = Math.max(capacity, 16);
+            keys = new long[2*capacity];
+            labels = new long[2*capacity];
+            scores = new int[capacity];
+        }
+
+
+        void add(long keyLo, long keyHi, long labelLo, long labelHi, int score)
+        {
+            if(size == scores.length)
+            {
+                keys = Arrays.copyOf(keys, 4*size);
+                labels = Arrays.copyOf(labels, 4*size);
+                scores = Arrays.copyOf(scores, 2*size);
+            }
+
+            keys[2*size] = keyLo;
+            keys[2*size + 1] = keyHi;
+            labels[2*size] = labelLo;
+            labels[2*size + 1] = labelHi;
+            scores[size] = score;
+            size++;
+        }
+
+
+        // One entry per position, in order of first occurrence, with the
+        // labels of all its occurrences.
+        Generation merged()
+        {
+            PositionIndex index = new PositionIndex(size);
+            Generation merged = new Generation(size);
+            for(int i = 0; i < size; i++)
+            {
+                int j = index.add(keys[2*i], keys[2*i + 1]);
+                if(j == merged.size)
+                {
+                    merged.add(keys[2*i], keys[2*i + 1], labels[2*i], labels[2*i + 1], scores[i]);
+                }
+                else
+                {
+                    merged.labels[2*j] |= labels[2*i];
+                    merged.labels[2*j + 1] |= labels[2*i + 1];
+                }
+            }
+            return merged;
+        }
+
+
+        // The count lowest scoring entries, ties broken by order, as
+        // PruningSearch.selectBest does.
+        Generation best(int count)
+        {
+            int top = 0;
+            for(int i = 0; i < size; i++)
+            {
+                top = Math.max(top, scores[i]);
+            }
+
+            int[] below = new int[top + 2];
+            for(int i = 0; i < size; i++)
+            {
+                below[scores[i] + 1]++;
+            }
+            int cutoff = 0;
+            while(below[cutoff] + below[cutoff + 1] < count)
+            {
+                below[cutoff + 1] += below[cutoff];
+                cutoff++;
+            }
+            int ties = count - below[cutoff];
+
+            Generation best = new Generation(count);
+            for(int i = 0; i < size; i++)
+            {
+                if(scores[i] < cutoff || (scores[i] == cutoff && ties-- > 0))
+                {
+                    best.add(keys[2*i], keys[2*i + 1], labels[2*i], labels[2*i + 1], scores[i]);
+                }
+            }
+            return best;
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package org.khrapov.pegsolitaire.solver;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * SolveCache remembers the outcome of SolveJobs in a single append-only file,
+ * so that a job that has been solved before, on any run of the program,
+ * comes back at once.
+ *
+ * <p>
+ * Jobs are keyed by what they ask, not by how it is laid out: the board is
+ * cut down to the rectangle its holes span, and of the eight ways to turn
+ * and mirror that rectangle, together with the pegs of the initial and
+ * final positions, the one with the smallest description is the key. The
+ * pruning number, and whether the job looks for the minimum, are part of
+ * the key. A board that is a rotation, a reflection or a shift of one seen
+ * before finds its entry, and the stored moves are carried back onto it.
+ * </p>
+ *
+ * <p>
+ * The verdict of a pruned search can depend on how the board is turned,
+ * because the order in which moves are generated breaks ties in the beam.
+ * The cache returns the verdict of whichever orientation was solved first.
+ * Results of jobs that ran out of time are not stored.
+ * </p>
+ *
+ * <p>
+ * Each record holds the key, the pruning number the job was solved with
+ * (-1 for no solution) and the moves. The whole file is read when the cache
+ * is opened. A record cut short by a crash is dropped, and the file is
+ * truncated to the last whole record. Each record is written whole and
+ * flushed before the cache holds it; if a write fails, the cache stops
+ * writing and keeps only what it has.
+ * </p>
+ */
+public class SolveCache
+{
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private OutputStream out; // null once a write has failed
+
+
+    /**
+     * Opens the cache file, creating it if it does not exist.
+     *
+     * @param file where the cache is kept.
+     */
+    public SolveCache(File file)
+    {
+        try
+        {
+            if(file.isFile())
+            {
+                load(file);
+            }
+            out = new FileOutputStream(file, true);
+        }
+        catch(IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+
+    public synchronized boolean contains(SolveJob job)
+    {
+        return entries.containsKey(new Frame(job).key);
+    }
+
+
+    /**
+     * @return the stored result of the job, or null if it has not been solved before.
+     */
+    public synchronized SolveResult get(SolveJob job)
+    {
+        Frame frame = new Frame(job);
+        Entry entry = entries.get(frame.key);
+        if(entry == null)
+        {
+            return null;
+        }
+        if(entry.pruningNumber < 0)
+        {
+            return new SolveResult(job, null, -1, false);
+        }
+
+        Board board = job.getInitialPosition().board();
+        Position p = job.getInitialPosition();
+        for(int m = 0; m < entry.moves.length; m += 4)
+        {
+            int[] from = frame.toBoard(entry.moves[m], entry.moves[m + 1]);
+            int[] to = frame.toBoard(entry.moves[m + 2], entry.moves[m + 3]);
+            p = jump(board, p, from[0], from[1], to[0], to[1]);
+            if(p == null)
+            {
+                return null; // does not replay; solve again
+            }
+        }
+        return new SolveResult(job, p, entry.pruningNumber, false);
+    }
+
+
+    /**
+     * Stores a result. Results of jobs that ran out of time are ignored,
+     * including a minimum pruning number the job could not finish looking for.
+     */
+    public synchronized void put(SolveResult result)
+    {
+        if(result.isTimedOut())
+        {
+            return;
+        }
+
+        Frame frame = new Frame(result.getJob());
+        if(entries.containsKey(frame.key))
+        {
+            return;
+        }
+
+        byte[] moves = new byte[0];
+        if(result.isSolved())
+        {
+            int m = 0;
+            moves = new byte[4*result.getSolution().size()];
+            for(Move move : result.getSolution())
+            {
+                int[] from = frame.toKey(move.x1, move.y1);
+                int[] to = frame.toKey(move.x2, move.y2);
+                moves[m++] = (byte) from[0];
+                moves[m++] = (byte) from[1];
+                moves[m++] = (byte) to[0];
+                moves[m++] = (byte) to[1];
+            }
+        }
+
+        if(out == null)
+        {
+            return; // read-only since a write failed
+        }
+
+        Entry entry = new Entry(result.getPruningNumber(), moves);
+        try
+        {
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream data = new DataOutputStream(record);
+            data.writeUTF(frame.key);
+            data.writeInt(entry.pruningNumber);
+            data.writeShort(moves.length / 4);
+            data.write(moves);
+
+            out.write(record.toByteArray());
+            out.flush();
+        }
+        catch(IOException e)
+        {
+            // a part written would hide every record appended after it
+            try
+            {
+                out.close();
+            }
+            catch(IOException ignored)
+            {
+            }
+            out = null;
+            throw new RuntimeException(e);
+        }
+        entries.put(frame.key, entry);
+    }
+
+
+    /**
+     * Returns the stored result of the job, or solves it and stores the result.
+     */
+    public SolveResult solve(SolveJob job)
+    {
+        SolveResult result = get(job);
+        if(result == null)
+        {
+            result = job.solve();
+            put(result);
+        }
+        return result;
+    }
+
+
+    public synchronized void close()
+    {
+        if(out == null)
+        {
+            return;
+        }
+
+        try
+        {
+            out.close();
+        }
+        catch(IOException e)
+        {
+            throw new RuntimeException(e);
+        }
+    }
+
+
+    private void load(File file) throws IOException
+    {
+        byte[] bytes = Files.readAllBytes(file.toPath());
+        ByteArrayInputStream buffer = new ByteArrayInputStream(bytes);
+        DataInputStream in = new DataInputStream(buffer);
+        long whole = 0;
+
+        try
+        {
+            while(buffer.available() > 0)
+            {
+                String key = in.readUTF();
+                int pruningNumber = in.readInt();
+                byte[] moves = new byte[4*in.readUnsignedShort()];
+                in.readFully(moves);
+                entries.put(key, new Entry(pruningNumber, moves));
+                whole = bytes.length - buffer.available();
+            }
+        }
+        catch(IOException e)
+        {
+            // cut short, or cut inside the key and left malformed
+            try(RandomAccessFile f = new RandomAccessFile(file, "rw"))
+            {
+                f.setLength(whole);
+            }
+        }
+    }
+
+
+    // p after the jump, or null if the jump is not legal in p
+    private static Position jump(Board board, Position p, int x1, int y1, int x2, int y2)
+    {
+        if(!p.occupied(x1, y1) || !p.occupied((x1 + x2) / 2, (y1 + y2) / 2) || !board.allowed(x2, y2) || p.occupied(x2, y2))
+        {
+            return null;
+        }
+
+        int from = board.hole(x1, y1);
+        int to = board.hole(x2, y2);
+        for(int j = 0; j < board.jumpCount; j++)
+        {
+            if(board.jumpFrom[j] == from && board.jumpTo[j] == to)
+            {
+                return p.beget(j);
+            }
+        }
+        return null;
+    }
+
+
+    private static final class Entry
+    {
+        private final int pruningNumber;
+        private final byte[] moves; // x1, y1, x2, y2 in the key's orientation
+
+
+        Entry(int pruningNumber, byte[] moves)
+        {
+            this.pruningNumber = pruningNumber;
+            this.moves = moves;
+        }
+    }
+
+
+    /**
+     * A job's board cut down to the rectangle its holes span and turned into
+     * the orientation of its key. Orientation t mirrors x if bit 0 is set,
+     * mirrors y if bit 1 is set, and then swaps x and y if bit 2 is set.
+     */
+    private static final class Frame
+    {
+        private final int left;
+        private final int top;
+        private final int width;
+        private final int height;
+        private int orientation;
+        private String key;
+
+
+        Frame(SolveJob job)
+        {
+            Position start = job.getInitialPosition();
+            Position target = job.getFinalPosition();
+            Board board = start.board();
+
+            int minX = board.X;
+            int minY = board.Y;
+            int maxX = -1;
+            int maxY = -1;
+            for(int y = 0; y < board.Y; y++)
+            {
+                for(int x = 0; x < board.X; x++)
+                {
+                    if(board.allowed(x, y))
+                    {
+                        minX = Math.min(minX, x);
+                        minY = Math.min(minY, y);
+                        maxX = Math.max(maxX, x);
+                        maxY = Math.max(maxY, y);
+                    }
+                }
+            }
+            left = minX;
+            top = minY;
+            width = maxX - minX + 1;
+            height = maxY - minY + 1;
+
+            String prefix = (job.isFindMinimum() ? "min " : "prune ") + job.getPruningNumber()
+                + (target == null ? " any " : " target ");
+            for(int t = 0; t < 8; t++)
+            {
+                String k = prefix + describe(board, start, target, t);
+                if(key == null || k.compareTo(key) < 0)
+                {
+                    key = k;
+                    orientation = t;
+                }
+            }
+        }
+
+
+        private String describe(Board board, Position start, Position target, int t)
+        {
+            int w = (t & 4) != 0 ? height : width;
+            int h = (t & 4) != 0 ? width : height;
+            StringBuilder b = new StringBuilder();
+            b.append(w).append('x').append(h).append(':');
+
+            for(int ky = 0; ky < h; ky++)
+            {
+                for(int kx = 0; kx < w; kx++)
+                {
+                    int[] cell = fromKey(kx, ky, t);
+                    int x = cell[0] + left;
+                    int y = cell[1] + top;
+                    if(!board.allowed(x, y))
+                    {
+                        b.append('.');
+                    }
+                    else
+                    {
+                        int c = start.occupied(x, y) ? 1 : 0;
+                        if(target != null && target.occupied(x, y))
+                        {
+                            c += 2;
+                        }
+                        b.append((char) ('0' + c));
+                    }
+                }
+            }
+            return b.toString();
+        }
+
+
+        // board coordinates to the key's orientation
+        int[] toKey(int x, int y)
+        {
+            x -= left;
+            y -= top;
+            if((orientation & 1) != 0) { x = width - 1 - x; }
+            if((orientation & 2) != 0) { y = height - 1 - y; }
+            return (orientation & 4) != 0 ? new int[] { y, x } : new int[] { x, y };
+        }
+
+
+        // the key's orientation to board coordinates
+        int[] toBoard(int kx, int ky)
+        {
+            int[] cell = fromKey(kx, ky, orientation);
+            return new int[] { cell[0] + left, cell[1] + top };
+        }
+
+
+        // key coordinates to coordinates within the rectangle
+        private int[] fromKey(int kx, int ky, int t)
+        {
+            int x = (t & 4) != 0 ? ky : kx;
+            int y = (t & 4) != 0 ? kx : ky;
+            if((t & 1) != 0) { x = width - 1 - x; }
+            if((t & 2) != 0) { y = height - 1 - y; }
+            return new int[] { x, y };
+        }
+    }
+}
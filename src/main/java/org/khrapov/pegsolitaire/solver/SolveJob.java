@@ -0,0 +1,115 @@
+package org.khrapov.pegsolitaire.solver;
+
+/**
+ * One position for BatchSolver to solve: what a single PruningSearch would
+ * be set up with. The board is the one the initial position belongs to.
+ */
+public class SolveJob
+{
+    private final Position initialPosition;
+    private final Position finalPosition;
+    private final int pruningNumber;
+    private long timeLimit = 0;
+    private boolean findMinimum = false;
+
+
+    /**
+     * @param initialPosition initial Position from which to conduct the search.
+     * @param finalPosition if not null, the search must end in its complement.
+     * @param pruningNumber pruning number of the search, or the largest one to
+     *                      try when looking for the minimum.
+     */
+    public SolveJob(Position initialPosition, Position finalPosition, int pruningNumber)
+    {
+        this.initialPosition = initialPosition;
+        this.finalPosition = finalPosition;
+        this.pruningNumber = pruningNumber;
+    }
+
+
+    /**
+     * Gives the job at most this many milliseconds once it starts. A job
+     * that runs out of time is marked timed out. It reports no solution,
+     * or, when it looks for the minimum, the smallest pruning number found
+     * to solve so far, which need not be the minimum.
+     * The default, 0 (zero), is no limit.
+     *
+     * @param millis time limit in milliseconds.
+     */
+    public void setTimeLimit(long millis)
+    {
+        timeLimit = millis;
+    }
+
+
+    /**
+     * Instead of one search, find the smallest pruning number that solves
+     * the position. See PruningSearch.minimumPruningNumber.
+     *
+     * @param val whether to look for the minimum pruning number.
+     */
+    public void setFindMinimum(boolean val)
+    {
+        findMinimum = val;
+    }
+
+
+    public Position getInitialPosition()
+    {
+        return initialPosition;
+    }
+
+
+    public Position getFinalPosition()
+    {
+        return finalPosition;
+    }
+
+
+    public int getPruningNumber()
+    {
+        return pruningNumber;
+    }
+
+
+    public boolean isFindMinimum()
+    {
+        return findMinimum;
+    }
+
+
+    SolveResult solve()
+    {
+        PruningSearch search = new PruningSearch(initialPosition, finalPosition);
+        if(timeLimit > 0)
+        {
+            search.setDeadline(System.nanoTime() + timeLimit*1000000L);
+        }
+
+        return solve(search);
+    }
+
+
+    // Runs the job on a search set up for it.
+    SolveResult solve(PruningSearch search)
+    {
+        int solvedWith;
+        if(findMinimum)
+        {
+            solvedWith = search.minimumPruningNumber(pruningNumber);
+        }
+        else
+        {
+            search.prune(pruningNumber);
+            solvedWith = search.search() > 0 ? pruningNumber : -1;
+        }
+
+        if(solvedWith < 0)
+        {
+            return new SolveResult(this, null, -1, search.timedOut());
+        }
+
+        // a minimum cut short is only an upper bound
+        return new SolveResult(this, search.getFinalPosition(0), solvedWith, search.timedOut());
+    }
+}
@@ -0,0 +1,73 @@
+package org.khrapov.pegsolitaire.solver;
+
+import java.util.List;
+
+/**
+ * The outcome of a SolveJob.
+ */
+public class SolveResult
+{
+    private final SolveJob job;
+    private final Position solution;
+    private final int pruningNumber;
+    private final boolean timedOut;
+
+
+    SolveResult(SolveJob job, Position solution, int pruningNumber, boolean timedOut)
+    {
+        this.job = job;
+        this.solution = solution;
+        this.pruningNumber = pruningNumber;
+        this.timedOut = timedOut;
+    }
+
+
+    public SolveJob getJob()
+    {
+        return job;
+    }
+
+
+    public boolean isSolved()
+    {
+        return solution != null;
+    }
+
+
+    /**
+     * @return true if the job ran out of time before it was finished: before
+     * it found a solution, or, when it looked for the minimum pruning number,
+     * before it could tell that the pruning number found is the minimum.
+     */
+    public boolean isTimedOut()
+    {
+        return timedOut;
+    }
+
+
+    /**
+     * @return the moves of the solution, or null if none was found.
+     */
+    public List<Move> getSolution()
+    {
+        if(solution == null) { return null; }
+
+        return solution.getHistory();
+    }
+
+
+    public Position getFinalPosition()
+    {
+        return solution;
+    }
+
+
+    /**
+     * @return the pruning number the solution was found with: the job's own,
+     * or the minimum when the job looked for it. -1 if there is no solution.
+     */
+    public int getPruningNumber()
+    {
+        return pruningNumber;
+    }
+}
@@ -0,0 +1,68 @@
+package org.khrapov.pegsolitaire.solver;
+
+/**
+ * TranspositionTable remembers packed positions in a fixed amount of memory.
+ * It is organised as buckets of four entries. When a bucket is full, a new key
+ * evicts one of the four, so the table never grows and a lookup may miss a
+ * key that was added long ago. It never reports a key that was not added.
+ */
+final class TranspositionTable
+{
+    private static final int BUCKET = 4;
+
+    private final long[] keys; // lo, hi pairs
+    private final int bucketMask;
+
+
+    /**
+     * @param entries capacity, rounded up to a power of two.
+     */
+    TranspositionTable(int entries)
+    {
+        int buckets = 1;
+        while(buckets*BUCKET < entries)
+        {
+            buckets <<= 1;
+        }
+        keys = new long[2*BUCKET*buckets];
+        bucketMask = buckets - 1;
+    }
+
+
+    boolean contains(long lo, long hi)
+    {
+        int h = PositionSet.hash(lo, hi);
+        int first = (h & bucketMask)*BUCKET;
+
+        for(int slot = first; slot < first + BUCKET; slot++)
+        {
+            if(keys[2*slot] == lo && keys[2*slot + 1] == hi)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    // (0, 0) marks a free entry, so the empty board cannot be stored.
+    void add(long lo, long hi)
+    {
+        int h = PositionSet.hash(lo, hi);
+        int first = (h & bucketMask)*BUCKET;
+
+        for(int slot = first; slot < first + BUCKET; slot++)
+        {
+            if(keys[2*slot] == 0L && keys[2*slot + 1] == 0L)
+            {
+                keys[2*slot] = lo;
+                keys[2*slot + 1] = hi;
+                return;
+            }
+        }
+
+        int victim = first + (h >>> 30);
+        keys[2*victim] = lo;
+        keys[2*victim + 1] = hi;
+    }
+}
@@ -0,0 +1,185 @@
+package org.khrapov.pegsolitaire.solver;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import java.util.List;
+import java.util.Random;
+
+
+public class BoardTest
+{
+  private static int[] diamond41 = new int[] {
+      0, 0, 0, 0, 1, 0, 0, 0, 0,
+      0, 0, 0, 1, 1, 1, 0, 0, 0,
+      0, 0, 1, 1, 1, 1, 1, 0, 0,
+      0, 1, 1, 1, 1, 1, 1, 1, 0,
+      1, 1, 1, 1, 1, 1, 1, 1, 1,
+      0, 1, 1, 1, 1, 1, 1, 1, 0,
+      0, 0, 1, 1, 1, 1, 1, 0, 0,
+      0, 0, 0, 1, 1, 1, 0, 0, 0,
+      0, 0, 0, 0, 1, 0, 0, 0, 0
+  };
+
+
+  private static int[] englishBoard = new int[] {
+      0, 0, 1, 1, 1, 0, 0,
+      0, 0, 1, 1, 1, 0, 0,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      0, 0, 1, 1, 1, 0, 0,
+      0, 0, 1, 1, 1, 0, 0
+  };
+
+
+  @Test
+  public void symmetryGroupOfDiamond()
+  {
+    Board b = new Board(9, 9, diamond41);
+    assertEquals(7, b.symmetryCount);
+  }
+
+
+  @Test
+  public void symmetryGroupOfRectangle()
+  {
+    Board b = new Board(6, 4, new int[24]);
+    assertEquals(3, b.symmetryCount);
+  }
+
+
+  @Test
+  public void positionClassIsInvariant()
+  {
+    Board b = new Board(9, 9, diamond41);
+    Random random = new Random(3L);
+
+    for(int game = 0; game < 50; game++)
+    {
+      Position p = b.initialPosition(4, 1 + random.nextInt(7));
+      int positionClass = p.positionClass();
+      List<Position> children = p.children();
+      while(!children.isEmpty())
+      {
+        p = children.get(random.nextInt(children.size()));
+        assertEquals(positionClass, p.positionClass());
+        children = p.children();
+      }
+    }
+  }
+
+
+  @Test
+  public void possiblySolvableRejectsOtherClasses()
+  {
+    // Diamond 41 as a whole is not of class 0, so no game on it can
+    // finish in the hole it started from
+    Board diamond = new Board(9, 9, diamond41);
+    for(int i = 0; i < 81; i++)
+    {
+      if(diamond.allowed(i))
+      {
+        Position p = diamond.initialPosition(i % 9, i / 9);
+        assertFalse(diamond.possiblySolvable(p, p));
+      }
+    }
+
+    // the English board's centre game can only finish on (3, y) or (x, 3)
+    // with x and y in 0, 3, 6
+    Board english = new Board(7, 7, englishBoard);
+    int ends = 0;
+    for(int i = 0; i < 49; i++)
+    {
+      if(english.allowed(i)
+          && english.possiblySolvable(english.initialPosition(3, 3), english.initialPosition(i % 7, i / 7)))
+      {
+        ends++;
+      }
+    }
+    assertEquals(5, ends);
+  }
+
+
+  @Test
+  public void canonicalFormIsSymmetryInvariant()
+  {
+    Board b = new Board(9, 9, diamond41);
+    Random random = new Random(13033L);
+    long[] key1 = new long[2];
+    long[] key2 = new long[2];
+
+    for(int n = 0; n < 1000; n++)
+    {
+      Position p = b.initialPosition(4, 4);
+      for(int i = 0; i < 81; i++)
+      {
+        if(random.nextBoolean())
+        {
+          p.set(i % 9, i / 9, false);
+        }
+      }
+
+      // rotate by a quarter turn and mirror, by coordinates
+      Position rotated = p.copy();
+      Position mirrored = p.copy();
+      for(int x = 0; x < 9; x++)
+      {
+        for(int y = 0; y < 9; y++)
+        {
+          rotated.set(x, y, p.occupied(y, 8 - x));
+          mirrored.set(x, y, p.occupied(8 - x, y));
+        }
+      }
+
+      p.canonical(key1);
+      rotated.canonical(key2);
+      assertArrayEquals(key1, key2);
+      mirrored.canonical(key2);
+      assertArrayEquals(key1, key2);
+    }
+  }
+
+
+  @Test
+  public void holesAreNumberedDensely()
+  {
+    // the English board in the middle of a 13x13 array: 169 cells, but 33
+    // holes and a single word per position
+    int[] cells = new int[13*13];
+    for(int i = 0; i < 49; i++)
+    {
+      cells[(i / 7 + 3)*13 + i % 7 + 3] = englishBoard[i];
+    }
+    Board sparse = new Board(13, 13, cells);
+    Board tight = new Board(7, 7, englishBoard);
+
+    assertEquals(33, sparse.holeCount);
+    assertEquals(0L, sparse.holesHi);
+    assertEquals(tight.holesLo, sparse.holesLo);
+    assertEquals(8, sparse.symmetryCount + 1);
+    for(int h = 0; h < sparse.holeCount; h++)
+    {
+      assertEquals(h, sparse.hole(sparse.holeX[h], sparse.holeY[h]));
+      assertEquals(sparse.holeX[h], tight.holeX[h] + 3);
+      assertEquals(sparse.holeY[h], tight.holeY[h] + 3);
+    }
+    assertEquals(-1, sparse.hole(0, 0));
+    assertEquals(-1, sparse.hole(-1, 5));
+    assertEquals(-1, sparse.hole(6, 13));
+
+    // the same game, move for move, shifted by (3, 3)
+    PruningSearch a = new PruningSearch(sparse.initialPosition(6, 6));
+    a.prune(121);
+    PruningSearch b = new PruningSearch(tight.initialPosition(3, 3));
+    b.prune(121);
+    assertEquals(b.search(), a.search());
+    List<Move> moves = b.getSolution(0);
+    for(int m = 0; m < moves.size(); m++)
+    {
+      assertEquals(moves.get(m).x1 + 3, a.getSolution(0).get(m).x1);
+      assertEquals(moves.get(m).y2 + 3, a.getSolution(0).get(m).y2);
+    }
+  }
+}
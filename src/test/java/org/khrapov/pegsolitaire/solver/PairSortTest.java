@@ -0,0 +1,41 @@
+package org.khrapov.pegsolitaire.solver;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import java.util.Random;
+import java.util.TreeSet;
+
+
+public class PairSortTest
+{
+  @Test
+  public void sortsAndRemovesDuplicates()
+  {
+    Random random = new Random(13033L);
+    for(int n : new int[] { 0, 1, 2, 17, 1000, 100000 })
+    {
+      long[] pairs = new long[2*n];
+      TreeSet<String> expected = new TreeSet<String>();
+      for(int i = 0; i < n; i++)
+      {
+        // few distinct values, so there are plenty of duplicates and ties on hi
+        pairs[2*i] = random.nextInt(64) - 32L;
+        pairs[2*i + 1] = random.nextInt(8) * 0x4000000000000000L;
+        expected.add(String.format("%016x%016x", pairs[2*i + 1], pairs[2*i]));
+      }
+
+      PairSort.sort(pairs, n);
+      int m = PairSort.unique(pairs, n);
+
+      assertEquals(expected.size(), m);
+      int i = 0;
+      for(String s : expected)
+      {
+        assertEquals(s, String.format("%016x%016x", pairs[2*i + 1], pairs[2*i]));
+        i++;
+      }
+    }
+  }
+}
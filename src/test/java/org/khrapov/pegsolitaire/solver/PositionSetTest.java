@@ -0,0 +1,150 @@
+package org.khrapov.pegsolitaire.solver;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+
+public class PositionSetTest
+{
+  private static int[] englishBoard = new int[]{
+      0, 0, 1, 1, 1, 0, 0,
+      0, 0, 1, 1, 1, 0, 0,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      0, 0, 1, 1, 1, 0, 0,
+      0, 0, 1, 1, 1, 0, 0
+  };
+
+
+  @Test
+  public void addAndContains()
+  {
+    PositionSet set = new PositionSet();
+
+    for(long i = 0; i < 10_000; i++)
+    {
+      assertTrue(set.add(i * 31, i % 7));
+    }
+
+    for(long i = 0; i < 10_000; i++)
+    {
+      assertFalse(set.add(i * 31, i % 7));
+      assertTrue(set.contains(i * 31, i % 7));
+    }
+
+    assertFalse(set.contains(1, 0));
+    assertEquals(10_000, set.size());
+
+    set.clear();
+    assertEquals(0, set.size());
+    assertFalse(set.contains(0, 0));
+    assertFalse(set.contains(31, 1));
+  }
+
+
+  @Test
+  public void dedupMatchesStringIds()
+  {
+    List<Position> children = children(englishBoard, 7, 7, 6);
+
+    Set<String> strings = new TreeSet<String>();
+    PositionSet packed = new PositionSet();
+    for(Position p : children)
+    {
+      assertEquals(strings.add(id(p)), packed.add(p.lo(), p.hi()));
+    }
+    assertEquals(strings.size(), packed.size());
+  }
+
+
+  @Test
+  public void dedupBenchmark()
+  {
+    // somebody requested a benchmark
+    List<Position> children = children(englishBoard, 7, 7, 7);
+    int rounds = 20;
+
+    long start = System.nanoTime();
+    int stringCount = 0;
+    for(int r = 0; r < rounds; r++)
+    {
+      Set<String> dedup = new TreeSet<String>();
+      for(Position p : children)
+      {
+        dedup.add(id(p));
+      }
+      stringCount = dedup.size();
+    }
+    long end = System.nanoTime();
+    System.out.printf("Dedup of %d children with TreeSet<String> took %f seconds.%n",
+        children.size(), (end-start)/1_000_000_000.0);
+
+    start = System.nanoTime();
+    PositionSet dedup = new PositionSet();
+    for(int r = 0; r < rounds; r++)
+    {
+      dedup.clear();
+      for(Position p : children)
+      {
+        dedup.add(p.lo(), p.hi());
+      }
+    }
+    end = System.nanoTime();
+    System.out.printf("Dedup of %d children with PositionSet took %f seconds.%n",
+        children.size(), (end-start)/1_000_000_000.0);
+
+    assertEquals(stringCount, dedup.size());
+  }
+
+
+  // the id the solver used to deduplicate on: one character per cell
+  private static String id(Position p)
+  {
+    StringBuilder sb = new StringBuilder();
+    for(int y = 0; y < 7; y++)
+    {
+      for(int x = 0; x < 7; x++)
+      {
+        sb.append(p.occupied(x, y) ? '1' : '0');
+      }
+    }
+    return sb.toString();
+  }
+
+
+  // all children, duplicates included, of an unpruned generation
+  private static List<Position> children(int[] holes, int x, int y, int generations)
+  {
+    Board b = new Board(x, y, holes);
+    List<Position> gen = new ArrayList<Position>();
+    gen.add(b.initialPosition(x/2, y/2));
+
+    List<Position> children = new ArrayList<Position>();
+    for(int g = 0; g < generations; g++)
+    {
+      children = new ArrayList<Position>();
+      PositionSet seen = new PositionSet();
+      List<Position> next = new ArrayList<Position>();
+      for(Position p : gen)
+      {
+        for(Position c : p.children())
+        {
+          children.add(c);
+          if(seen.add(c.lo(), c.hi()))
+          {
+            next.add(c);
+          }
+        }
+      }
+      gen = next;
+    }
+    return children;
+  }
+}
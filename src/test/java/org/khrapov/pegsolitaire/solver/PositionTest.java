@@ -0,0 +1,168 @@
+package org.khrapov.pegsolitaire.solver;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+
+public class PositionTest
+{
+  private static int[] frenchBoard = new int[]{
+      0, 0, 1, 1, 1, 0, 0,
+      0, 1, 1, 1, 1, 1, 0,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      0, 1, 1, 1, 1, 1, 0,
+      0, 0, 1, 1, 1, 0, 0
+  };
+
+
+  @Test
+  public void incrementalScoreMatchesRecompute()
+  {
+    Random random = new Random(13033L);
+
+    checkRandomGames(new Board(7, 7, frenchBoard), 3, 2, random);
+    checkRandomGames(new Board(6, 4, ones(24)), 1, 1, random);
+    checkRandomGames(new Board(11, 10, ones(110)), 5, 5, random);
+  }
+
+
+  @Test
+  public void selectBestMatchesStableSort()
+  {
+    Board b = new Board(7, 7, frenchBoard);
+    List<Position> gen = new ArrayList<Position>();
+    gen.add(b.initialPosition(3, 3));
+    for(int g = 0; g < 5; g++)
+    {
+      List<Position> next = new ArrayList<Position>();
+      for(Position p : gen)
+      {
+        next.addAll(p.children());
+      }
+      gen = next;
+    }
+
+    List<Position> sorted = new ArrayList<Position>(gen);
+    Collections.sort(sorted, new PositionComparator());
+
+    for(int count : new int[] { 1, 17, 100, 1000, gen.size() - 1 })
+    {
+      List<Position> best = PruningSearch.selectBest(gen, count);
+      assertEquals(sorted.subList(0, count), best);
+    }
+  }
+
+
+  @Test
+  public void selectDiverseKeepsEveryJump()
+  {
+    Board b = new Board(7, 7, frenchBoard);
+    List<Position> gen = new ArrayList<Position>();
+    gen.add(b.initialPosition(3, 3));
+    for(int g = 0; g < 5; g++)
+    {
+      List<Position> next = new ArrayList<Position>();
+      for(Position p : gen)
+      {
+        next.addAll(p.children());
+      }
+      gen = next;
+    }
+
+    Set<Integer> jumps = new HashSet<Integer>();
+    for(Position p : gen)
+    {
+      jumps.add(p.jump());
+    }
+
+    for(int count : new int[] { 1, 17, 100, 1000, gen.size() - 1 })
+    {
+      List<Position> best = PruningSearch.selectDiverse(gen, count, false);
+      assertEquals(count, best.size());
+      assertEquals(count, new HashSet<Position>(best).size());
+
+      Set<Integer> kept = new HashSet<Integer>();
+      for(int i = 0; i < best.size(); i++)
+      {
+        kept.add(best.get(i).jump());
+        if(i > 0)
+        {
+          assertTrue(best.get(i - 1).score() <= best.get(i).score());
+        }
+      }
+      assertEquals(Math.min(count, jumps.size()), kept.size());
+    }
+
+    assertSame(gen, PruningSearch.selectDiverse(gen, gen.size(), false));
+  }
+
+
+  @Test
+  public void predecessorsUndoChildren()
+  {
+    Board b = new Board(7, 7, frenchBoard);
+    Random random = new Random(7L);
+
+    for(int game = 0; game < 20; game++)
+    {
+      Position p = b.initialPosition(3, 2);
+      List<Position> children = p.children();
+      while(!children.isEmpty())
+      {
+        Position child = children.get(random.nextInt(children.size()));
+        boolean found = false;
+        for(Position q : child.predecessors())
+        {
+          assertEquals(q.calculateCompactnessScore(), q.score());
+          assertEquals(q.complement().calculateCompactnessScore(), q.complementScore());
+          found |= q.lo() == p.lo() && q.hi() == p.hi();
+        }
+        assertTrue(found);
+
+        p = child;
+        children = p.children();
+      }
+    }
+  }
+
+
+  private static void checkRandomGames(Board b, int x, int y, Random random)
+  {
+    for(int game = 0; game < 50; game++)
+    {
+      Position p = b.initialPosition(x, y);
+      List<Position> children = p.children();
+
+      while(!children.isEmpty())
+      {
+        for(Position c : children)
+        {
+          assertEquals(c.calculateCompactnessScore(), c.score());
+        }
+        p = children.get(random.nextInt(children.size()));
+        children = p.children();
+      }
+    }
+  }
+
+
+  private static int[] ones(int n)
+  {
+    int[] holes = new int[n];
+    for(int i = 0; i < n; i++)
+    {
+      holes[i] = 1;
+    }
+    return holes;
+  }
+}
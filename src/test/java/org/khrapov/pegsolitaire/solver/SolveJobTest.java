@@ -0,0 +1,66 @@
+package org.khrapov.pegsolitaire.solver;
+
+import static org.junit.Assert.*;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+
+public class SolveJobTest
+{
+  private static int[] englishBoard = new int[]{
+      0, 0, 1, 1, 1, 0, 0,
+      0, 0, 1, 1, 1, 0, 0,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      0, 0, 1, 1, 1, 0, 0,
+      0, 0, 1, 1, 1, 0, 0
+  };
+
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+
+  @Test
+  public void minimumCutShortIsTimedOutAndNotCached()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(3, 3);
+    SolveJob job = new SolveJob(p, p, 1000);
+    job.setFindMinimum(true);
+
+    // The limit, 1000, solves first. The deadline passes in the scan from 1
+    // upwards, at 2.
+    final PruningSearch search = new PruningSearch(p, p);
+    search.setListener((stats) -> {
+      if(stats.getPruningNumber() == 2)
+      {
+        search.setDeadline(System.nanoTime());
+      }
+    });
+
+    SolveResult r = job.solve(search);
+    assertTrue(r.isSolved());
+    assertTrue(r.isTimedOut());
+    assertEquals(1000, r.getPruningNumber());
+
+    SolveCache cache = new SolveCache(new File(folder.getRoot(), "cache.bin"));
+    cache.put(r);
+    assertFalse(cache.contains(job));
+    assertEquals(0, cache.size());
+    cache.close();
+
+    // finished, the job finds the minimum and it is kept
+    SolveResult full = job.solve();
+    assertFalse(full.isTimedOut());
+    assertEquals(45, full.getPruningNumber());
+    cache = new SolveCache(new File(folder.getRoot(), "cache.bin"));
+    cache.put(full);
+    assertTrue(cache.contains(job));
+    cache.close();
+  }
+}
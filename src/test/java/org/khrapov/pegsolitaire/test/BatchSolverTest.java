@@ -0,0 +1,119 @@
+package org.khrapov.pegsolitaire.test;
+
+import static org.junit.Assert.*;
+
+import org.khrapov.pegsolitaire.solver.BatchSolver;
+import org.khrapov.pegsolitaire.solver.Board;
+import org.khrapov.pegsolitaire.solver.Position;
+import org.khrapov.pegsolitaire.solver.SolveJob;
+import org.khrapov.pegsolitaire.solver.SolveResult;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+
+public class BatchSolverTest
+{
+  private static int[] englishBoard = new int[]{
+      0, 0, 1, 1, 1, 0, 0,
+      0, 0, 1, 1, 1, 0, 0,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      0, 0, 1, 1, 1, 0, 0,
+      0, 0, 1, 1, 1, 0, 0
+  };
+
+
+  @Test
+  public void solvesEveryJob()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    List<SolveJob> jobs = new ArrayList<SolveJob>();
+    for(int y = 0; y < 7; y++)
+    {
+      for(int x = 0; x < 7; x++)
+      {
+        if(b.allowed(x, y))
+        {
+          Position p = b.initialPosition(x, y);
+          SolveJob job = new SolveJob(p, p, 5000);
+          job.setFindMinimum(true);
+          jobs.add(job);
+        }
+      }
+    }
+
+    BatchSolver solver = new BatchSolver(4);
+    int count = 0;
+    for(Iterator<SolveResult> results = solver.solve(jobs.iterator()); results.hasNext(); )
+    {
+      SolveResult r = results.next();
+      assertTrue(r.isSolved());
+      assertTrue(r.getJob().getInitialPosition().isComplement(r.getFinalPosition()));
+      assertEquals(b.holeCount - 2, r.getSolution().size());
+      assertTrue(r.getPruningNumber() > 0);
+      count++;
+    }
+    solver.shutdown();
+
+    assertEquals(jobs.size(), count);
+  }
+
+
+  @Test
+  public void jobsAreTakenOnlyWhenThereIsRoom()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    final Position p = b.initialPosition(3, 3);
+    final int[] taken = new int[1];
+
+    Iterator<SolveJob> endless = new Iterator<SolveJob>() {
+      @Override
+      public boolean hasNext()
+      {
+        return true;
+      }
+
+      @Override
+      public SolveJob next()
+      {
+        taken[0]++;
+        return new SolveJob(p, p, 10);
+      }
+    };
+
+    BatchSolver solver = new BatchSolver(2);
+    solver.setMaxInFlight(3);
+    Iterator<SolveResult> results = solver.solve(endless);
+    assertEquals(3, taken[0]);
+
+    for(int i = 0; i < 5; i++)
+    {
+      results.next();
+    }
+    assertEquals(8, taken[0]);
+    solver.shutdown();
+  }
+
+
+  @Test
+  public void timeLimit()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(3, 3);
+    SolveJob job = new SolveJob(p, p, 1 << 20);
+    job.setTimeLimit(1);
+
+    BatchSolver solver = new BatchSolver(1);
+    List<SolveJob> jobs = new ArrayList<SolveJob>();
+    jobs.add(job);
+    SolveResult r = solver.solve(jobs.iterator()).next();
+    solver.shutdown();
+
+    assertFalse(r.isSolved());
+    assertTrue(r.isTimedOut());
+  }
+}
@@ -0,0 +1,218 @@
+package org.khrapov.pegsolitaire.test;
+
+import static org.junit.Assert.*;
+
+import org.khrapov.pegsolitaire.solver.Board;
+import org.khrapov.pegsolitaire.solver.Census;
+import org.khrapov.pegsolitaire.solver.ExhaustiveSearch;
+import org.khrapov.pegsolitaire.solver.Position;
+import org.junit.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+public class CensusTest
+{
+  private static int[] board5x5 = new int[]{
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1
+  };
+
+
+  @Test
+  public void countsDoNotDependOnSymmetry()
+  {
+    Board b = new Board(5, 5, board5x5);
+
+    for(int y = 0; y < 3; y++)
+    {
+      for(int x = y; x < 3; x++)
+      {
+        Position p = b.initialPosition(x, y);
+        Census reduced = new Census(p);
+        reduced.run();
+        Census full = new Census(p);
+        full.setUseSymmetry(false);
+        full.run();
+
+        for(int pegs = 0; pegs <= b.holeCount; pegs++)
+        {
+          assertEquals(full.getReachable(pegs), reduced.getReachable(pegs));
+          assertEquals(full.getSolvable(pegs), reduced.getSolvable(pegs));
+          assertEquals(full.getReachable(pegs), full.getReachableClasses(pegs));
+          assertTrue(reduced.getReachableClasses(pegs) <= reduced.getReachable(pegs));
+          assertTrue(reduced.getSolvable(pegs) <= reduced.getReachable(pegs));
+        }
+        assertTrue(reduced.getPeakBytes() <= full.getPeakBytes());
+
+        // the initial position is solvable if it can be played down to any single peg
+        assertEquals(1, reduced.getReachable(b.holeCount - 1));
+        assertEquals(new ExhaustiveSearch(p).search() ? 1 : 0, reduced.getSolvable(b.holeCount - 1));
+      }
+    }
+  }
+
+
+  @Test
+  public void firstGenerationsByHand()
+  {
+    Board b = new Board(5, 5, board5x5);
+    Census census = new Census(b.initialPosition(0, 0));
+    census.run();
+
+    // from a corner, two jumps, mirror images of each other
+    assertEquals(2, census.getReachable(23));
+    assertEquals(1, census.getReachableClasses(23));
+    assertEquals(0, census.getReachable(25));
+  }
+
+
+  @Test
+  public void stripBeyondSixtyFourHoles()
+  {
+    // a 1x70 strip: 70 holes, so positions take both words; pegs on
+    // x = 65, 66 and 68, in the high word
+    int[] strip = new int[70];
+    Arrays.fill(strip, 1);
+    Board b = new Board(70, 1, strip);
+    Position p = b.initialPosition(0, 0);
+    for(int x = 0; x < 70; x++)
+    {
+      p.set(x, 0, x == 65 || x == 66 || x == 68);
+    }
+
+    Census census = new Census(p);
+    census.run();
+
+    // oo.o -> ..oo or o..o; ..oo -> o or o, on 66 and 69; o..o is stuck
+    assertEquals(1, census.getReachable(3));
+    assertEquals(2, census.getReachable(2));
+    assertEquals(2, census.getReachable(1));
+    assertEquals(1, census.getSolvable(3));
+    assertEquals(1, census.getSolvable(2));
+    assertEquals(2, census.getSolvable(1));
+  }
+
+
+  @Test
+  public void boardBeyondSixtyFourHolesAgreesWithBruteForce()
+  {
+    // the full 9x9 board has 81 holes; a block of pegs in rows 5 to 8 and
+    // columns 3 to 5, less (4, 8), straddles the two words, and the mirror
+    // image in x = 4 leaves it in place
+    int[] full = new int[81];
+    Arrays.fill(full, 1);
+    Board b = new Board(9, 9, full);
+    Position p = b.initialPosition(0, 0);
+    for(int y = 0; y < 9; y++)
+    {
+      for(int x = 0; x < 9; x++)
+      {
+        p.set(x, y, y >= 5 && x >= 3 && x <= 5 && !(x == 4 && y == 8));
+      }
+    }
+
+    // every reachable position, by peg count, by playing every jump
+    List<Set<String>> reachable = new ArrayList<Set<String>>();
+    for(int pegs = 0; pegs <= 11; pegs++)
+    {
+      reachable.add(new HashSet<String>());
+    }
+    Map<String, Position> positions = new HashMap<String, Position>();
+    positions.put(p.toString(), p);
+    reachable.get(11).add(p.toString());
+    for(int pegs = 11; pegs > 1; pegs--)
+    {
+      for(String s : reachable.get(pegs))
+      {
+        for(Position child : jumps(positions.get(s)))
+        {
+          positions.put(child.toString(), child);
+          reachable.get(pegs - 1).add(child.toString());
+        }
+      }
+    }
+
+    // and those that can be played down to one peg
+    List<Set<String>> solvable = new ArrayList<Set<String>>();
+    solvable.add(new HashSet<String>());
+    solvable.add(reachable.get(1));
+    for(int pegs = 2; pegs <= 11; pegs++)
+    {
+      Set<String> good = new HashSet<String>();
+      for(String s : reachable.get(pegs))
+      {
+        for(Position child : jumps(positions.get(s)))
+        {
+          if(solvable.get(pegs - 1).contains(child.toString()))
+          {
+            good.add(s);
+            break;
+          }
+        }
+      }
+      solvable.add(good);
+    }
+
+    Census reduced = new Census(p);
+    reduced.run();
+    Census plain = new Census(p);
+    plain.setUseSymmetry(false);
+    plain.run();
+
+    assertEquals(1, solvable.get(11).size());
+    assertTrue(solvable.get(1).size() > 0);
+    for(int pegs = 1; pegs <= 11; pegs++)
+    {
+      assertEquals(reachable.get(pegs).size(), reduced.getReachable(pegs));
+      assertEquals(reachable.get(pegs).size(), plain.getReachable(pegs));
+      assertEquals(solvable.get(pegs).size(), reduced.getSolvable(pegs));
+      assertEquals(solvable.get(pegs).size(), plain.getSolvable(pegs));
+    }
+    assertTrue(reduced.getReachableClasses(8) < plain.getReachableClasses(8));
+  }
+
+
+  // every position one jump away, through the public interface only
+  private static List<Position> jumps(Position p)
+  {
+    Board b = p.board();
+    int[] dx = new int[] { 0, 0, 1, -1 };
+    int[] dy = new int[] { 1, -1, 0, 0 };
+    List<Position> children = new ArrayList<Position>();
+    for(int y = 0; y < b.Y; y++)
+    {
+      for(int x = 0; x < b.X; x++)
+      {
+        for(int d = 0; d < 4; d++)
+        {
+          int x2 = x + 2*dx[d];
+          int y2 = y + 2*dy[d];
+          if(x2 < 0 || y2 < 0 || x2 >= b.X || y2 >= b.Y)
+          {
+            continue;
+          }
+
+          if(p.occupied(x, y) && p.occupied(x + dx[d], y + dy[d]) && b.allowed(x2, y2) && !p.occupied(x2, y2))
+          {
+            Position child = p.copy();
+            child.set(x, y, false);
+            child.set(x + dx[d], y + dy[d], false);
+            child.set(x2, y2, true);
+            children.add(child);
+          }
+        }
+      }
+    }
+    return children;
+  }
+}
@@ -0,0 +1,67 @@
+package org.khrapov.pegsolitaire.test;
+
+import static org.junit.Assert.*;
+
+import org.khrapov.pegsolitaire.solver.Board;
+import org.khrapov.pegsolitaire.solver.ExhaustiveSearch;
+import org.khrapov.pegsolitaire.solver.Position;
+import org.junit.*;
+
+
+public class ExhaustiveSearchTest
+{
+  private static int[] englishBoard = new int[]{
+      0, 0, 1, 1, 1, 0, 0,
+      0, 0, 1, 1, 1, 0, 0,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      0, 0, 1, 1, 1, 0, 0,
+      0, 0, 1, 1, 1, 0, 0
+  };
+
+
+  private static int[] board5x5 = new int[]{
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1
+  };
+
+
+  @Test
+  public void solveEnglishBoardToComplement()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(3, 3);
+    ExhaustiveSearch search = new ExhaustiveSearch(p, p);
+
+    assertTrue(search.search());
+    assertEquals(b.holeCount - 2, search.getSolution().size());
+    assertTrue(p.isComplement(search.getFinalPosition()));
+  }
+
+
+  @Test
+  public void board5x5CenterIsUnsolvable()
+  {
+    Board b = new Board(5, 5, board5x5);
+    ExhaustiveSearch search = new ExhaustiveSearch(b.initialPosition(2, 2));
+
+    assertFalse(search.search());
+    assertNull(search.getSolution());
+  }
+
+
+  @Test
+  public void smallTableEvictsButStillSolves()
+  {
+    Board b = new Board(5, 5, board5x5);
+    ExhaustiveSearch search = new ExhaustiveSearch(b.initialPosition(2, 0));
+    search.setTableSize(64);
+
+    assertTrue(search.search());
+    assertEquals(b.holeCount - 2, search.getSolution().size());
+  }
+}
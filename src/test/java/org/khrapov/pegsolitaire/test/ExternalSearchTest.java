@@ -0,0 +1,89 @@
+package org.khrapov.pegsolitaire.test;
+
+import static org.junit.Assert.*;
+
+import org.khrapov.pegsolitaire.solver.Board;
+import org.khrapov.pegsolitaire.solver.ExhaustiveSearch;
+import org.khrapov.pegsolitaire.solver.ExternalSearch;
+import org.khrapov.pegsolitaire.solver.Position;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+
+public class ExternalSearchTest
+{
+  private static int[] board5x5 = new int[]{
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1
+  };
+
+
+  @Rule
+  public TemporaryFolder scratch = new TemporaryFolder();
+
+
+  @Test
+  public void agreesWithExhaustiveSearch()
+  {
+    Board b = new Board(5, 5, board5x5);
+
+    for(int y = 0; y < 3; y++)
+    {
+      for(int x = y; x < 3; x++)
+      {
+        Position p = b.initialPosition(x, y);
+        ExhaustiveSearch exhaustive = new ExhaustiveSearch(p, p);
+
+        ExternalSearch external = new ExternalSearch(p, p);
+        external.setScratchDirectory(scratch.getRoot());
+        external.setRunSize(1000);
+        external.setFanIn(2);
+
+        boolean solvable = exhaustive.search();
+        assertEquals(solvable, external.search());
+        if(solvable)
+        {
+          assertTrue(p.isComplement(external.getFinalPosition()));
+          assertEquals(b.holeCount - 2, external.getSolution().size());
+        }
+      }
+    }
+
+    assertEquals(0, scratch.getRoot().list().length);
+  }
+
+
+  @Test
+  public void anySinglePeg()
+  {
+    Board b = new Board(5, 5, board5x5);
+    int solvable = 0;
+
+    for(int y = 0; y < 3; y++)
+    {
+      for(int x = y; x < 3; x++)
+      {
+        Position p = b.initialPosition(x, y);
+        ExternalSearch external = new ExternalSearch(p);
+        external.setScratchDirectory(scratch.getRoot());
+
+        boolean solved = external.search();
+        assertEquals(new ExhaustiveSearch(p).search(), solved);
+        if(solved)
+        {
+          assertEquals(b.holeCount - 2, external.getSolution().size());
+          solvable++;
+        }
+        else
+        {
+          assertNull(external.getSolution());
+        }
+      }
+    }
+
+    assertTrue(solvable > 0);
+  }
+}
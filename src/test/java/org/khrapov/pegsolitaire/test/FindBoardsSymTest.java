@@ -1,15 +1,19 @@
 package org.khrapov.pegsolitaire.test;
 
 import org.junit.Test;
+import org.khrapov.pegsolitaire.solver.BatchSolver;
 import org.khrapov.pegsolitaire.solver.Board;
 import org.khrapov.pegsolitaire.solver.Position;
-import org.khrapov.pegsolitaire.solver.PruningSearch;
+import org.khrapov.pegsolitaire.solver.SolveCache;
+import org.khrapov.pegsolitaire.solver.SolveJob;
+import org.khrapov.pegsolitaire.solver.SolveResult;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.UnsupportedEncodingException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Iterator;
 
 import static org.khrapov.pegsolitaire.test.Util.*;
 
@@ -95,9 +99,7 @@ public class FindBoardsSymTest {
         return result;
     }
 
-    @Test
-    public void findSolvableBoards() throws NoSuchAlgorithmException, FileNotFoundException, UnsupportedEncodingException {
-        int solutions = 0;
+    private SolveJob nextJob(SolveCache cache, int pruneNumber) {
         while (true) {
             int[][] board = makeBoard();
             int w = board[0].length;
@@ -110,26 +112,44 @@ public class FindBoardsSymTest {
 
             Position p = b.initialPosition(w/2, h/2);
             Position f = b.initialPosition(w/2, h/2);
-            PruningSearch pruningSearch = new PruningSearch(p, f);
-            int pruneNumber = 30000;
-            pruningSearch.prune(pruneNumber);
-
-            String checkFile = "check/" +pruneNumber + "_" + hash(p.toString()) + ".txt";
-            if (new File(checkFile).isFile()) {
+            if (!b.possiblySolvable(p, f)) {
                 continue;
             }
 
-            solutions = pruningSearch.search();
-            if (solutions != 0) {
-                pruningSearch.clearSolutions();
-                int difficultyAbsolute = 0;
-                do {
-                    difficultyAbsolute += 1;
-                    pruningSearch.prune(difficultyAbsolute);
-                    solutions = pruningSearch.search();
-                } while (solutions == 0);
-
-                String result = solutionToString(p, pruningSearch.getSolution(0));
+            SolveJob job = new SolveJob(p, f, pruneNumber);
+            job.setFindMinimum(true);
+            if (!cache.contains(job)) {
+                return job;
+            }
+        }
+    }
+
+    @Test
+    public void findSolvableBoards() throws NoSuchAlgorithmException, FileNotFoundException, UnsupportedEncodingException {
+        int pruneNumber = 30000;
+        SolveCache cache = new SolveCache(new File("check/solve-cache.bin"));
+        BatchSolver solver = new BatchSolver(Runtime.getRuntime().availableProcessors());
+        solver.setCache(cache);
+        Iterator<SolveResult> results = solver.solve(new Iterator<SolveJob>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public SolveJob next() {
+                return nextJob(cache, pruneNumber);
+            }
+        });
+
+        while (results.hasNext()) {
+            SolveResult solved = results.next();
+            Position p = solved.getJob().getInitialPosition();
+            if (solved.isSolved()) {
+                int difficultyAbsolute = solved.getPruningNumber();
+                int count = p.board().holeCount;
+
+                String result = solutionToString(p, solved.getSolution());
                 String stringHash = hash(result);
 
                 int difficulty = (int)Math.round(difficultyAbsolute * 100.0 / count);
@@ -141,8 +161,6 @@ public class FindBoardsSymTest {
                     write(fileName, result);
                 }
             }
-
-            write(checkFile, p.toString());
         }
     }
 }
@@ -1,10 +1,12 @@
 package org.khrapov.pegsolitaire.test;
 
 import org.junit.Test;
+import org.khrapov.pegsolitaire.solver.BatchSolver;
 import org.khrapov.pegsolitaire.solver.Board;
 import org.khrapov.pegsolitaire.solver.Move;
 import org.khrapov.pegsolitaire.solver.Position;
-import org.khrapov.pegsolitaire.solver.PruningSearch;
+import org.khrapov.pegsolitaire.solver.SolveJob;
+import org.khrapov.pegsolitaire.solver.SolveResult;
 
 import java.io.FileNotFoundException;
 import java.io.PrintWriter;
@@ -12,6 +14,7 @@ import java.io.UnsupportedEncodingException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Iterator;
 
 import static org.khrapov.pegsolitaire.test.Util.solutionToString;
 import static org.khrapov.pegsolitaire.test.Util.toHexString;
@@ -70,9 +73,7 @@ public class FindBoardsTest {
         return new int[] { selected % w, selected / h };
     }
 
-    @Test
-    public void findSolvableBoards() throws NoSuchAlgorithmException, FileNotFoundException, UnsupportedEncodingException {
-        int solutions = 0;
+    private SolveJob nextJob() {
         while (true) {
             int w = 8;
             int h = 8;
@@ -81,15 +82,35 @@ public class FindBoardsTest {
             Board b = new Board(w, h, board);
             Position p = b.initialPosition(start[0], start[1]);
             Position f = b.initialPosition(start[0], start[1]);
-            PruningSearch pruningSearch = new PruningSearch(p, f);
+            if (b.possiblySolvable(p, f)) {
+                return new SolveJob(p, f, 500);
+            }
+        }
+    }
+
+    @Test
+    public void findSolvableBoards() throws NoSuchAlgorithmException, FileNotFoundException, UnsupportedEncodingException {
+        BatchSolver solver = new BatchSolver(Runtime.getRuntime().availableProcessors());
+        Iterator<SolveResult> results = solver.solve(new Iterator<SolveJob>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public SolveJob next() {
+                return nextJob();
+            }
+        });
 
-            pruningSearch.prune(500);
-            solutions = pruningSearch.search();
-            if (solutions != 0) {
+        while (results.hasNext()) {
+            SolveResult solved = results.next();
+            if (solved.isSolved()) {
+                Position p = solved.getJob().getInitialPosition();
                 System.out.println(p);
                 System.out.println("----------------");
 
-                String result = solutionToString(p, pruningSearch.getSolution(0));
+                String result = solutionToString(p, solved.getSolution());
                 MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
                 messageDigest.update(result.getBytes());
                 String stringHash = toHexString(messageDigest.digest()).substring(0, 48);
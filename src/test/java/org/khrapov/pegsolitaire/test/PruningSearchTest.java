@@ -3,10 +3,20 @@ package org.khrapov.pegsolitaire.test;
 import static org.junit.Assert.*;
 
 import org.khrapov.pegsolitaire.solver.Board;
+import org.khrapov.pegsolitaire.solver.CancellationToken;
+import org.khrapov.pegsolitaire.solver.GenerationStats;
+import org.khrapov.pegsolitaire.solver.Move;
 import org.khrapov.pegsolitaire.solver.Position;
 import org.khrapov.pegsolitaire.solver.PruningSearch;
+import org.khrapov.pegsolitaire.solver.SearchResult;
 import org.junit.*;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
 
 public class PruningSearchTest
 {
@@ -106,6 +116,34 @@ public class PruningSearchTest
   }
 
 
+  @Test
+  public void englishSolutionReplays()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(3, 3);
+    PruningSearch pruningSearch = new PruningSearch(p);
+    pruningSearch.prune(121);
+    pruningSearch.search();
+
+    List<Move> solution = pruningSearch.getSolution(0);
+    assertEquals(b.holeCount - 2, solution.size());
+
+    Position q = p.copy();
+    for (Move move : solution)
+    {
+      int xm = (move.x1 + move.x2) / 2;
+      int ym = (move.y1 + move.y2) / 2;
+      assertTrue(q.occupied(move.x1, move.y1));
+      assertTrue(q.occupied(xm, ym));
+      assertFalse(q.occupied(move.x2, move.y2));
+      q.set(move.x1, move.y1, false);
+      q.set(xm, ym, false);
+      q.set(move.x2, move.y2, true);
+    }
+    assertEquals(pruningSearch.getFinalPosition(0).toString(), q.toString());
+  }
+
+
   @Test
   public void solveFrenchBoard1()
   {
@@ -184,6 +222,15 @@ public class PruningSearchTest
   }
 
 
+  @Test(expected = RuntimeException.class)
+  public void boardTooLarge()
+  {
+    int[] holes = new int[130];
+    Arrays.fill(holes, 1);
+    Board b = new Board(13, 10, holes);
+  }
+
+
   @Test
   public void solve9x9Board()
   {
@@ -283,4 +330,421 @@ public class PruningSearchTest
       fail("Solution to Diamond41 board has not been found");
     }
   }
+
+
+  @Test
+  public void listenerSeesEveryGeneration()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(3, 3);
+    List<GenerationStats> sequential = new ArrayList<GenerationStats>();
+    List<GenerationStats> parallel = new ArrayList<GenerationStats>();
+
+    PruningSearch pruningSearch = new PruningSearch(p);
+    pruningSearch.prune(121);
+    pruningSearch.setListener(sequential::add);
+    assertTrue(pruningSearch.search() > 0);
+
+    pruningSearch = new PruningSearch(p);
+    pruningSearch.prune(121);
+    pruningSearch.setParallelism(4);
+    pruningSearch.setListener(parallel::add);
+    assertTrue(pruningSearch.search() > 0);
+
+    // one generation per jump
+    assertEquals(b.holeCount - 2, sequential.size());
+    assertEquals(sequential.size(), parallel.size());
+
+    int input = 1;
+    for(int i = 0; i < sequential.size(); i++)
+    {
+      GenerationStats s = sequential.get(i);
+      assertEquals(b.holeCount - 1 - i, s.getPegCount());
+      assertEquals(input, s.getInputSize());
+      assertEquals(s.getProduced(), s.getExcluded() + s.getDuplicates() + s.getChildren());
+      assertTrue(s.getKept() <= 121);
+
+      int histogram = 0;
+      for(int count : s.getScoreHistogram())
+      {
+        histogram += count;
+      }
+      assertEquals(s.getChildren(), histogram);
+
+      if(s.getChildren() > 121)
+      {
+        assertEquals(121, s.getKept());
+        assertTrue(s.getScoreCutoff() >= 0);
+      }
+      else
+      {
+        assertEquals(s.getChildren(), s.getKept());
+        assertEquals(-1, s.getScoreCutoff());
+      }
+
+      GenerationStats q = parallel.get(i);
+      assertEquals(s.getProduced(), q.getProduced());
+      assertEquals(s.getChildren(), q.getChildren());
+      assertEquals(s.getKept(), q.getKept());
+      assertEquals(s.getScoreCutoff(), q.getScoreCutoff());
+
+      input = s.getKept();
+    }
+  }
+
+
+  @Test
+  public void timeLimitedSearchTellsGivingUpFromFailing()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(3, 3);
+
+    PruningSearch pruningSearch = new PruningSearch(p);
+    pruningSearch.prune(121);
+    SearchResult result = pruningSearch.search(1, TimeUnit.MINUTES);
+    assertEquals(SearchResult.Status.SOLVED, result.getStatus());
+    assertTrue(result.getSolutionCount() > 0);
+    assertNotNull(pruningSearch.getSolution(0));
+
+    pruningSearch = new PruningSearch(p);
+    pruningSearch.prune(1);
+    result = pruningSearch.search(1, TimeUnit.MINUTES);
+    assertEquals(SearchResult.Status.NO_SOLUTION, result.getStatus());
+    assertFalse(result.hasGivenUp());
+
+    // every peg missing from the deepest position was taken by one of its moves
+    int pegs = result.getDeepestPosition().toString().replaceAll("[^o]", "").length();
+    assertEquals(b.holeCount - 1 - pegs, result.getDeepestMoves().size());
+  }
+
+
+  @Test
+  public void repeatedSearchStartsAfresh()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(3, 3);
+
+    PruningSearch pruningSearch = new PruningSearch(p);
+    pruningSearch.prune(121);
+    int solutions = pruningSearch.search();
+    assertTrue(solutions > 0);
+    assertEquals(solutions, pruningSearch.search());
+
+    CancellationToken token = new CancellationToken();
+    token.cancel();
+    assertEquals(SearchResult.Status.CANCELLED, pruningSearch.search(token).getStatus());
+    assertEquals(SearchResult.Status.SOLVED, pruningSearch.search(1, TimeUnit.MINUTES).getStatus());
+    assertEquals(solutions, pruningSearch.search());
+  }
+
+
+  @Test
+  public void timeLimitStopsLongSearch()
+  {
+    Board b = new Board(9, 9, wiegleb);
+    Position p = b.initialPosition(4, 4);
+    PruningSearch pruningSearch = new PruningSearch(p);
+    pruningSearch.prune(1000000);
+
+    long start = System.nanoTime();
+    SearchResult result = pruningSearch.search(200, TimeUnit.MILLISECONDS);
+    long millis = (System.nanoTime() - start) / 1000000;
+
+    assertEquals(SearchResult.Status.TIMED_OUT, result.getStatus());
+    assertTrue(result.hasGivenUp());
+    assertTrue("took " + millis + " ms", millis < 2000);
+    assertTrue(result.getDeepestMoves().size() > 0);
+  }
+
+
+  @Test
+  public void cancelledSearchStops() throws Exception
+  {
+    Board b = new Board(9, 9, wiegleb);
+    Position p = b.initialPosition(4, 4);
+    PruningSearch pruningSearch = new PruningSearch(p);
+    pruningSearch.prune(1000000);
+    pruningSearch.setParallelism(2);
+
+    CancellationToken token = new CancellationToken();
+    Thread canceller = new Thread(() -> {
+      try
+      {
+        Thread.sleep(200);
+      }
+      catch(InterruptedException e)
+      {
+        return;
+      }
+      token.cancel();
+    });
+    canceller.start();
+
+    long start = System.nanoTime();
+    SearchResult result = pruningSearch.search(token);
+    long millis = (System.nanoTime() - start) / 1000000;
+    canceller.join();
+
+    assertEquals(SearchResult.Status.CANCELLED, result.getStatus());
+    assertTrue("took " + millis + " ms", millis < 2000);
+    assertNotNull(result.getDeepestPosition());
+  }
+
+
+  @Test
+  public void solutionsStreamMatchesSearch()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(3, 3);
+
+    PruningSearch pruningSearch = new PruningSearch(p);
+    pruningSearch.prune(200);
+    int n = pruningSearch.search();
+    assertEquals(5, n);
+    List<String> all = new ArrayList<String>();
+    for(int i = 0; i < n; i++)
+    {
+      all.add(pruningSearch.getSolution(i).toString());
+    }
+
+    PruningSearch lazy = new PruningSearch(p);
+    lazy.prune(200);
+    List<Position> streamed = lazy.solutions().collect(Collectors.toList());
+    assertEquals(n, streamed.size());
+    for(int i = 0; i < n; i++)
+    {
+      assertEquals(all.get(i), lazy.getSolution(i).toString());
+    }
+
+    // the search stops with the parent that gave the first solution
+    lazy.solutions().findFirst();
+    assertEquals(all.get(0), lazy.getSolution(0).toString());
+    assertNull(lazy.getFinalPosition(2));
+
+    assertEquals(3, lazy.solutions().limit(3).count());
+    assertNull(lazy.getFinalPosition(4));
+  }
+
+
+  @Test
+  public void solutionsStreamWithFinalPosition()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(2, 0);
+    Position target = b.initialPosition(5, 3);
+
+    PruningSearch pruningSearch = new PruningSearch(p, target);
+    pruningSearch.prune(200);
+    Position f = pruningSearch.solutions().findFirst().orElse(null);
+    assertNotNull(f);
+    assertTrue(target.isComplement(f));
+
+    // 3x3 cannot be solved
+    Board small = new Board(3, 3, new int[] { 1, 1, 1, 1, 1, 1, 1, 1, 1 });
+    Position q = small.initialPosition(1, 1);
+    assertEquals(0, new PruningSearch(q, q).solutions().count());
+  }
+
+
+  @Test
+  public void parallelSearchMatchesSequential()
+  {
+    Board b = new Board(9, 9, diamond41);
+    Position p = b.initialPosition(3, 1);
+
+    PruningSearch sequential = new PruningSearch(p);
+    sequential.setUseSymmetry(true);
+    sequential.prune(83);
+
+    PruningSearch parallel = new PruningSearch(p);
+    parallel.setUseSymmetry(true);
+    parallel.prune(83);
+    parallel.setParallelism(4);
+
+    assertEquals(sequential.search(), parallel.search());
+    assertEquals(sequential.getSolution(0).toString(), parallel.getSolution(0).toString());
+  }
+
+
+  @Test
+  public void pagodasSaveBeamSlots()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(2, 0);
+
+    PruningSearch withPagodas = new PruningSearch(p, p);
+    withPagodas.prune(11);
+    assertTrue(withPagodas.search() > 0);
+    assertTrue(p.isComplement(withPagodas.getFinalPosition(0)));
+
+    PruningSearch withoutPagodas = new PruningSearch(p, p);
+    withoutPagodas.setUsePagodas(false);
+    withoutPagodas.prune(11);
+    assertEquals(0, withoutPagodas.search());
+  }
+
+
+  @Test
+  public void bidirectionalSolvesWithSmallerBeam()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(2, 0);
+
+    PruningSearch forward = new PruningSearch(p, p);
+    forward.prune(5);
+    assertEquals(0, forward.search());
+
+    PruningSearch bidirectional = new PruningSearch(p, p);
+    bidirectional.setBidirectional(true);
+    bidirectional.prune(5);
+    assertTrue(bidirectional.search() > 0);
+    assertTrue(p.isComplement(bidirectional.getFinalPosition(0)));
+
+    List<Move> solution = bidirectional.getSolution(0);
+    assertEquals(31, solution.size());
+
+    Position q = p.copy();
+    for (Move move : solution)
+    {
+      int xm = (move.x1 + move.x2) / 2;
+      int ym = (move.y1 + move.y2) / 2;
+      assertTrue(q.occupied(move.x1, move.y1));
+      assertTrue(q.occupied(xm, ym));
+      assertFalse(q.occupied(move.x2, move.y2));
+      q.set(move.x1, move.y1, false);
+      q.set(xm, ym, false);
+      q.set(move.x2, move.y2, true);
+    }
+    assertEquals(bidirectional.getFinalPosition(0).toString(), q.toString());
+  }
+
+
+  @Test
+  public void backwardSearchFromEndHole()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position start = b.initialPosition(2, 0);
+    Position end = b.initialPosition(5, 3);
+
+    PruningSearch forward = new PruningSearch(start, end);
+    forward.prune(7);
+    assertEquals(0, forward.search());
+
+    PruningSearch backward = new PruningSearch(start, end);
+    backward.setBackward(true);
+    backward.prune(7);
+    assertTrue(backward.search() > 0);
+    assertTrue(end.isComplement(backward.getFinalPosition(0)));
+    assertEquals(31, backward.getSolution(0).size());
+  }
+
+
+  @Test
+  public void backwardSearchFromTwoHoles()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position start = b.initialPosition(3, 3);
+    start.set(3, 1, false);
+    start.set(3, 2, false);
+    start.set(3, 3, true);
+    Position end = b.initialPosition(3, 3);
+
+    PruningSearch forward = new PruningSearch(start, end);
+    forward.prune(1000);
+    assertTrue(forward.search() > 0);
+
+    PruningSearch backward = new PruningSearch(start, end);
+    backward.setBackward(true);
+    backward.prune(1000);
+    assertTrue(backward.search() > 0);
+    assertTrue(end.isComplement(backward.getFinalPosition(0)));
+    assertEquals(30, backward.getSolution(0).size());
+  }
+
+
+  @Test
+  public void backwardSearchFindsStartHoles()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    PruningSearch search = new PruningSearch(null, b.initialPosition(3, 3));
+    search.setBackward(true);
+    search.prune(1000);
+    search.search();
+
+    assertEquals(5, search.getStartPositions().size());
+    boolean centre = false;
+    for(Position p : search.getStartPositions())
+    {
+      centre |= !p.occupied(3, 3);
+    }
+    assertTrue(centre);
+  }
+
+
+  @Test
+  public void minimumPruningNumber()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(2, 0);
+
+    PruningSearch search = new PruningSearch(p, p);
+    int d = search.minimumPruningNumber(1000);
+    assertEquals(11, d);
+    assertTrue(p.isComplement(search.getFinalPosition(0)));
+
+    PruningSearch below = new PruningSearch(p, p);
+    below.prune(d - 1);
+    assertEquals(0, below.search());
+  }
+
+
+  @Test
+  public void reliablePruningNumber()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(3, 3);
+
+    PruningSearch minimum = new PruningSearch(p);
+    assertEquals(45, minimum.minimumPruningNumber(1000));
+    assertEquals(31, minimum.getSolution(0).size());
+
+    PruningSearch reliable = new PruningSearch(p);
+    assertEquals(121, reliable.reliablePruningNumber(1000));
+    assertEquals(31, reliable.getSolution(0).size());
+  }
+
+
+  @Test
+  public void diverseBeam()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(3, 3);
+
+    PruningSearch plain = new PruningSearch(p);
+    plain.prune(16);
+    assertEquals(0, plain.search());
+
+    PruningSearch diverse = new PruningSearch(p);
+    diverse.setDiverse(true);
+    diverse.prune(16);
+    assertTrue(diverse.search() > 0);
+    assertEquals(31, diverse.getSolution(0).size());
+
+    // against 45 for the plain beam, see reliablePruningNumber
+    PruningSearch minimum = new PruningSearch(p);
+    minimum.setDiverse(true);
+    assertEquals(16, minimum.minimumPruningNumber(1000));
+  }
+
+
+  @Test
+  public void minimumPruningNumberOfUnsolvable()
+  {
+    // a 3x3 board can not be cleared down to the start hole
+    Board b = new Board(3, 3, new int[] { 1, 1, 1, 1, 1, 1, 1, 1, 1 });
+    Position p = b.initialPosition(0, 0);
+    PruningSearch search = new PruningSearch(p, p);
+    assertEquals(-1, search.minimumPruningNumber(1 << 20));
+    assertEquals(0, search.search());
+  }
 }
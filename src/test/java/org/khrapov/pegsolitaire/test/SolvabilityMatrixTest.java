@@ -0,0 +1,115 @@
+package org.khrapov.pegsolitaire.test;
+
+import static org.junit.Assert.*;
+
+import org.khrapov.pegsolitaire.solver.Board;
+import org.khrapov.pegsolitaire.solver.ExhaustiveSearch;
+import org.khrapov.pegsolitaire.solver.Position;
+import org.khrapov.pegsolitaire.solver.SolvabilityMatrix;
+import org.junit.*;
+
+
+public class SolvabilityMatrixTest
+{
+  private static int[] englishBoard = new int[]{
+      0, 0, 1, 1, 1, 0, 0,
+      0, 0, 1, 1, 1, 0, 0,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      0, 0, 1, 1, 1, 0, 0,
+      0, 0, 1, 1, 1, 0, 0
+  };
+
+
+  private static int[] board5x5 = new int[]{
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1
+  };
+
+
+  @Test
+  public void exactMatrixAgreesWithExhaustiveSearch()
+  {
+    Board b = new Board(5, 5, board5x5);
+    SolvabilityMatrix matrix = new SolvabilityMatrix(b);
+    matrix.solve();
+
+    SolvabilityMatrix plain = new SolvabilityMatrix(b);
+    plain.setUseSymmetry(false);
+    plain.solve();
+    assertTrue(matrix.getStartClasses() < plain.getStartClasses());
+
+    int solvable = 0;
+    for(int y1 = 0; y1 < 5; y1++)
+    {
+      for(int x1 = 0; x1 < 5; x1++)
+      {
+        Position p = b.initialPosition(x1, y1);
+        for(int y2 = 0; y2 < 5; y2++)
+        {
+          for(int x2 = 0; x2 < 5; x2++)
+          {
+            Position f = b.initialPosition(x2, y2);
+            boolean expected = b.possiblySolvable(p, f) && new ExhaustiveSearch(p, f).search();
+            assertEquals(expected, matrix.isSolvable(x1, y1, x2, y2));
+            assertEquals(expected, plain.isSolvable(x1, y1, x2, y2));
+            assertEquals(expected, matrix.getEnds(x1, y1).occupied(x2, y2));
+            if(expected)
+            {
+              solvable++;
+            }
+          }
+        }
+      }
+    }
+    assertTrue(solvable > 0);
+  }
+
+
+  @Test
+  public void prunedMatrixOnEnglishBoard()
+  {
+    Board b = new Board(7, 7, englishBoard);
+    SolvabilityMatrix matrix = new SolvabilityMatrix(b);
+    matrix.prune(20000);
+    matrix.solve();
+
+    // the 33 start holes come in 7 classes under the 8 symmetries
+    assertEquals(7, matrix.getStartClasses());
+    assertTrue(matrix.isSolvable(3, 3, 3, 3));
+
+    for(int y1 = 0; y1 < 7; y1++)
+    {
+      for(int x1 = 0; x1 < 7; x1++)
+      {
+        if(!b.allowed(x1, y1))
+        {
+          continue;
+        }
+
+        for(int y2 = 0; y2 < 7; y2++)
+        {
+          for(int x2 = 0; x2 < 7; x2++)
+          {
+            if(!b.allowed(x2, y2))
+            {
+              continue;
+            }
+
+            // the board's symmetries carry solvable pairs onto solvable pairs
+            assertEquals(matrix.isSolvable(x1, y1, x2, y2), matrix.isSolvable(6 - x1, y1, 6 - x2, y2));
+            assertEquals(matrix.isSolvable(x1, y1, x2, y2), matrix.isSolvable(y1, x1, y2, x2));
+
+            // on the English board every pair the position class allows is solvable
+            assertEquals(b.possiblySolvable(b.initialPosition(x1, y1), b.initialPosition(x2, y2)),
+                matrix.isSolvable(x1, y1, x2, y2));
+          }
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,218 @@
+package org.khrapov.pegsolitaire.test;
+
+import static org.junit.Assert.*;
+
+import org.khrapov.pegsolitaire.solver.Board;
+import org.khrapov.pegsolitaire.solver.Position;
+import org.khrapov.pegsolitaire.solver.SolveCache;
+import org.khrapov.pegsolitaire.solver.SolveJob;
+import org.khrapov.pegsolitaire.solver.SolveResult;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+
+public class SolveCacheTest
+{
+  private static int[] englishBoard = new int[]{
+      0, 0, 1, 1, 1, 0, 0,
+      0, 0, 1, 1, 1, 0, 0,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      1, 1, 1, 1, 1, 1, 1,
+      0, 0, 1, 1, 1, 0, 0,
+      0, 0, 1, 1, 1, 0, 0
+  };
+
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+
+  @Test
+  public void resultsSurviveReopening() throws Exception
+  {
+    File file = new File(folder.getRoot(), "cache.bin");
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(2, 0);
+
+    SolveCache cache = new SolveCache(file);
+    assertNull(cache.get(new SolveJob(p, p, 50)));
+    assertTrue(cache.solve(new SolveJob(p, p, 50)).isSolved());
+    cache.close();
+
+    cache = new SolveCache(file);
+    assertEquals(1, cache.size());
+    SolveResult r = cache.get(new SolveJob(p, p, 50));
+    assertTrue(r.isSolved());
+    assertEquals(b.holeCount - 2, r.getSolution().size());
+    assertTrue(p.isComplement(r.getFinalPosition()));
+
+    // a different pruning number is a different question
+    assertFalse(cache.contains(new SolveJob(p, p, 51)));
+    cache.close();
+  }
+
+
+  @Test
+  public void symmetricAndShiftedBoardsShareEntries()
+  {
+    SolveCache cache = new SolveCache(new File(folder.getRoot(), "cache.bin"));
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(2, 0);
+    cache.solve(new SolveJob(p, p, 50));
+
+    // mirrored, and turned a quarter
+    for(Position q : new Position[] { b.initialPosition(4, 0), b.initialPosition(0, 4) })
+    {
+      SolveResult r = cache.get(new SolveJob(q, q, 50));
+      assertTrue(r.isSolved());
+      assertTrue(q.isComplement(r.getFinalPosition()));
+    }
+
+    // the same board in a larger grid
+    int[] larger = new int[9*9];
+    for(int i = 0; i < englishBoard.length; i++)
+    {
+      larger[(i / 7 + 1)*9 + i % 7 + 2] = englishBoard[i];
+    }
+    Board shifted = new Board(9, 9, larger);
+    Position s = shifted.initialPosition(4, 1);
+    SolveResult r = cache.get(new SolveJob(s, s, 50));
+    assertTrue(r.isSolved());
+    assertTrue(s.isComplement(r.getFinalPosition()));
+
+    assertEquals(1, cache.size());
+    cache.close();
+  }
+
+
+  @Test
+  public void storesNoSolution()
+  {
+    SolveCache cache = new SolveCache(new File(folder.getRoot(), "cache.bin"));
+    Board b = new Board(3, 3, new int[] { 1, 1, 1, 1, 1, 1, 1, 1, 1 });
+    Position p = b.initialPosition(0, 0);
+
+    assertFalse(cache.solve(new SolveJob(p, p, 100)).isSolved());
+    SolveResult r = cache.get(new SolveJob(p, p, 100));
+    assertNotNull(r);
+    assertFalse(r.isSolved());
+    assertEquals(-1, r.getPruningNumber());
+    cache.close();
+  }
+
+
+  @Test
+  public void dropsTruncatedRecord() throws Exception
+  {
+    File file = new File(folder.getRoot(), "cache.bin");
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(2, 0);
+    Position q = b.initialPosition(3, 1);
+
+    SolveCache cache = new SolveCache(file);
+    cache.solve(new SolveJob(p, p, 50));
+    cache.solve(new SolveJob(q, q, 50));
+    cache.close();
+
+    try(RandomAccessFile f = new RandomAccessFile(file, "rw"))
+    {
+      f.setLength(f.length() - 5);
+    }
+
+    cache = new SolveCache(file);
+    assertEquals(1, cache.size());
+    assertTrue(cache.solve(new SolveJob(q, q, 50)).isSolved());
+    cache.close();
+
+    cache = new SolveCache(file);
+    assertEquals(2, cache.size());
+    cache.close();
+  }
+
+
+  @Test
+  public void dropsRecordCutInsideKey() throws Exception
+  {
+    File file = new File(folder.getRoot(), "cache.bin");
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(2, 0);
+    Position q = b.initialPosition(3, 1);
+
+    SolveCache cache = new SolveCache(file);
+    cache.solve(new SolveJob(p, p, 50));
+    cache.close();
+    long first = file.length();
+
+    cache = new SolveCache(file);
+    cache.solve(new SolveJob(q, q, 50));
+    cache.close();
+
+    // the key's length and three of its characters
+    try(RandomAccessFile f = new RandomAccessFile(file, "rw"))
+    {
+      f.setLength(first + 5);
+    }
+
+    cache = new SolveCache(file);
+    assertEquals(1, cache.size());
+    cache.close();
+    assertEquals(first, file.length());
+
+    // a key ending in the first byte of a two-byte character
+    try(RandomAccessFile f = new RandomAccessFile(file, "rw"))
+    {
+      f.seek(first);
+      f.write(new byte[] { 0, 2, 'o', (byte) 0xC3 });
+    }
+
+    cache = new SolveCache(file);
+    assertEquals(1, cache.size());
+    assertTrue(cache.solve(new SolveJob(q, q, 50)).isSolved());
+    cache.close();
+
+    cache = new SolveCache(file);
+    assertEquals(2, cache.size());
+    cache.close();
+  }
+
+
+  @Test
+  public void failedWriteIsNotKept()
+  {
+    File file = new File(folder.getRoot(), "cache.bin");
+    Board b = new Board(7, 7, englishBoard);
+    Position p = b.initialPosition(2, 0);
+    Position q = b.initialPosition(3, 1);
+
+    SolveCache cache = new SolveCache(file);
+    cache.solve(new SolveJob(p, p, 50));
+    SolveCache other = new SolveCache(new File(folder.getRoot(), "other.bin"));
+    SolveResult r = other.solve(new SolveJob(q, q, 50));
+    other.close();
+
+    // writing to the closed file fails
+    cache.close();
+    try
+    {
+      cache.put(r);
+      fail();
+    }
+    catch(RuntimeException e)
+    {
+    }
+    assertFalse(cache.contains(r.getJob()));
+
+    // and the cache writes no more
+    cache.put(r);
+    assertEquals(1, cache.size());
+    cache.close();
+
+    cache = new SolveCache(file);
+    assertEquals(1, cache.size());
+    cache.close();
+  }
+}